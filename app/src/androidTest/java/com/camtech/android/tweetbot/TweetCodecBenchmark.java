@@ -0,0 +1,165 @@
+package com.camtech.android.tweetbot;
+
+import android.os.Parcel;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.camtech.android.tweetbot.models.Tweet;
+import com.camtech.android.tweetbot.models.TweetCodec;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the size and encode/decode time of {@link TweetCodec}
+ * against writing the same tweets to a Parcel. Results are logged
+ * under the "TweetCodecBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TweetCodecBenchmark {
+    private static final String TAG = TweetCodecBenchmark.class.getSimpleName();
+    private static final int NUM_TWEETS = 500;
+    private static final int NUM_AUTHORS = 50;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 100;
+
+    @Test
+    public void codecRoundTripsTweets() throws Exception {
+        List<Tweet> tweets = createTweets();
+        List<Tweet> decoded = TweetCodec.decode(TweetCodec.encode(tweets));
+
+        assertEquals(tweets.size(), decoded.size());
+        for (int i = 0; i < tweets.size(); i++) {
+            Tweet expected = tweets.get(i);
+            Tweet actual = decoded.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+            assertEquals(expected.getScreenName(), actual.getScreenName());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getUserDescription(), actual.getUserDescription());
+            assertEquals(expected.getUserProfilePic(), actual.getUserProfilePic());
+            assertEquals(expected.getMessage(), actual.getMessage());
+            assertEquals(expected.getKeyWord(), actual.getKeyWord());
+            assertEquals(expected.getLang(), actual.getLang());
+            assertEquals(expected.isRetweet(), actual.isRetweet());
+        }
+    }
+
+    @Test
+    public void compareWithParcelable() throws Exception {
+        List<Tweet> tweets = createTweets();
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            TweetCodec.decode(TweetCodec.encode(tweets));
+            unparcel(parcel(tweets));
+        }
+
+        long codecEncodeNanos = 0, codecDecodeNanos = 0;
+        long parcelEncodeNanos = 0, parcelDecodeNanos = 0;
+        int codecSize = 0, parcelSize = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            byte[] encoded = TweetCodec.encode(tweets);
+            codecEncodeNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            TweetCodec.decode(encoded);
+            codecDecodeNanos += System.nanoTime() - start;
+            codecSize = encoded.length;
+
+            start = System.nanoTime();
+            byte[] parcelled = parcel(tweets);
+            parcelEncodeNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            unparcel(parcelled);
+            parcelDecodeNanos += System.nanoTime() - start;
+            parcelSize = parcelled.length;
+        }
+
+        Log.i(TAG, String.format("%d tweets, %d authors, %d rounds", NUM_TWEETS, NUM_AUTHORS, ROUNDS));
+        Log.i(TAG, String.format("TweetCodec: %d bytes, encode %d us, decode %d us",
+                codecSize, codecEncodeNanos / ROUNDS / 1000, codecDecodeNanos / ROUNDS / 1000));
+        Log.i(TAG, String.format("Parcelable: %d bytes, encode %d us, decode %d us",
+                parcelSize, parcelEncodeNanos / ROUNDS / 1000, parcelDecodeNanos / ROUNDS / 1000));
+
+        assertTrue(codecSize < parcelSize);
+    }
+
+    /**
+     * Writes the tweets the way Tweet#writeToParcel used to before Tweet moved to :core
+     */
+    private static byte[] parcel(List<Tweet> tweets) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeInt(tweets.size());
+            for (Tweet tweet : tweets) {
+                parcel.writeLong(tweet.getCreatedAt());
+                parcel.writeString(tweet.getScreenName());
+                parcel.writeString(tweet.getName());
+                parcel.writeString(tweet.getUserDescription());
+                parcel.writeString(tweet.getUserProfilePic());
+                parcel.writeString(tweet.getMessage());
+                parcel.writeString(tweet.getKeyWord());
+                parcel.writeLong(tweet.getId());
+                parcel.writeByte((byte) (tweet.isRetweet() ? 1 : 0));
+                parcel.writeString(tweet.getLang());
+            }
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static List<Tweet> unparcel(byte[] data) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            int size = parcel.readInt();
+            List<Tweet> tweets = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long createdAt = parcel.readLong();
+                String screenName = parcel.readString();
+                String name = parcel.readString();
+                String userDescription = parcel.readString();
+                String userProfilePic = parcel.readString();
+                String message = parcel.readString();
+                String keyWord = parcel.readString();
+                long id = parcel.readLong();
+                boolean isRetweet = parcel.readByte() != 0;
+                String lang = parcel.readString();
+                tweets.add(new Tweet(createdAt, screenName, name, userDescription,
+                        userProfilePic, message, keyWord, id, isRetweet, lang));
+            }
+            return tweets;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static List<Tweet> createTweets() {
+        List<Tweet> tweets = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < NUM_TWEETS; i++) {
+            int author = i % NUM_AUTHORS;
+            tweets.add(new Tweet(
+                    now - i * 1_000L,
+                    "user_" + author,
+                    "User " + author,
+                    "Just a regular person who tweets about things, user #" + author,
+                    "https://pbs.twimg.com/profile_images/" + author + "/photo_bigger.jpg",
+                    "This is tweet number " + i + " about the keyword, check it out https://t.co/abc" + i,
+                    "keyword",
+                    1_000_000_000_000_000_000L + i,
+                    i % 3 == 0,
+                    "en"));
+        }
+        return tweets;
+    }
+}
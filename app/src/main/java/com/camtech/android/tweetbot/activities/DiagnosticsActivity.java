@@ -0,0 +1,97 @@
+package com.camtech.android.tweetbot.activities;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.v7.app.AppCompatActivity;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import com.camtech.android.tweetbot.R;
+import com.camtech.android.tweetbot.core.Metrics;
+import com.camtech.android.tweetbot.core.StreamProcessor;
+import com.camtech.android.tweetbot.services.TwitterService;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+
+/**
+ * Shows everything in {@link Metrics#getDefault()}, refreshed every second.
+ * The same text can be pulled from a device for a bug report with
+ * <pre>
+ * adb shell dumpsys activity service com.camtech.android.tweetbot/.services.TwitterService
+ * </pre>
+ * while the stream is running, see {@link TwitterService}.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    private static final long REFRESH_MILLIS = 1_000;
+    private final Handler handler = new Handler();
+    private final Metrics metrics = Metrics.getDefault();
+    // Used to work out the rates since the last refresh
+    private long lastRefreshTime;
+    private long lastReceived;
+    private long lastAccepted;
+
+    @BindView(R.id.tv_diagnostics) TextView tvDiagnostics;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+        ButterKnife.bind(this);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        lastRefreshTime = SystemClock.elapsedRealtime();
+        lastReceived = metrics.counter(StreamProcessor.METRIC_RECEIVED).getCount();
+        lastAccepted = metrics.counter(StreamProcessor.METRIC_ACCEPTED).getCount();
+        handler.post(refresh);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refresh);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+        }
+        return true;
+    }
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            long now = SystemClock.elapsedRealtime();
+            long received = metrics.counter(StreamProcessor.METRIC_RECEIVED).getCount();
+            long accepted = metrics.counter(StreamProcessor.METRIC_ACCEPTED).getCount();
+            double seconds = Math.max(now - lastRefreshTime, 1) / 1000.0;
+
+            StringWriter text = new StringWriter();
+            PrintWriter writer = new PrintWriter(text);
+            writer.println(getString(R.string.diagnostics_rates,
+                    (received - lastReceived) / seconds,
+                    (accepted - lastAccepted) / seconds));
+            writer.println();
+            metrics.dump(writer);
+            tvDiagnostics.setText(text.toString());
+
+            lastRefreshTime = now;
+            lastReceived = received;
+            lastAccepted = accepted;
+            handler.postDelayed(this, REFRESH_MILLIS);
+        }
+    };
+}
@@ -4,6 +4,7 @@ import android.content.res.Configuration;
 import android.os.Bundle;
 import android.support.v4.util.Pair;
 import android.support.v7.app.AppCompatActivity;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.ImageView;
@@ -11,21 +12,55 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.camtech.android.tweetbot.R;
+import com.camtech.android.tweetbot.core.OccurrenceSeries;
 import com.camtech.android.tweetbot.utils.DbUtils;
 import com.github.mikephil.charting.charts.BarChart;
+import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Description;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
 import com.github.mikephil.charting.data.BarData;
 import com.github.mikephil.charting.data.BarDataSet;
 import com.github.mikephil.charting.data.BarEntry;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
+import com.github.mikephil.charting.highlight.Highlight;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
+import com.github.mikephil.charting.listener.OnChartValueSelectedListener;
 
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Shows the number of occurrences of every keyword as a bar chart, next to
+ * the estimated number of people who posted them. Tapping a
+ * bar shows how often that keyword occurred over time instead. The rate chart
+ * always spans the keyword's whole history, but the part that's zoomed in on is
+ * reloaded from the finest {@link OccurrenceSeries.Tier} that covers it.
+ */
 public class GraphActivity extends AppCompatActivity {
 
+    private static final float MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private BarChart chart;
+    private LineChart rateChart;
+    private String rateKeyWord;
+    // X values of the rate chart are minutes since this time
+    private long rateOrigin;
+    private OccurrenceSeries.Tier rateDetailTier;
+    // Formatters are expensive to create so one is kept for each pattern and locale
+    private final Map<String, SimpleDateFormat> rateFormats = new HashMap<>();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -37,14 +72,15 @@ public class GraphActivity extends AppCompatActivity {
 
         ImageView emptyGraphImage = findViewById(R.id.graph_icon);
         TextView emptyGraphText = findViewById(R.id.graph_text);
-        BarChart chart = findViewById(R.id.chart);
+        chart = findViewById(R.id.chart);
+        rateChart = findViewById(R.id.rate_chart);
 
         // Hide the notification bar and nav buttons
         getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN, WindowManager.LayoutParams.FLAG_FULLSCREEN);
         getWindow().setFlags(WindowManager.LayoutParams.FLAG_TRANSLUCENT_NAVIGATION, WindowManager.LayoutParams.FLAG_TRANSLUCENT_NAVIGATION);
         getWindow().setFlags(WindowManager.LayoutParams.FLAG_TRANSLUCENT_STATUS, WindowManager.LayoutParams.FLAG_TRANSLUCENT_STATUS);
 
-        List<Pair<String, Integer>> pairs = DbUtils.getAllKeyWords(this, sortOrder);
+        List<Pair<String, Long>> pairs = DbUtils.getAllKeyWords(this, sortOrder);
         if (pairs == null) {
             // There's no data, so show the empty view
             emptyGraphImage.setVisibility(View.VISIBLE);
@@ -56,25 +92,41 @@ public class GraphActivity extends AppCompatActivity {
 
             String[] keyWord = new String[pairs.size()];
             ArrayList<BarEntry> entries = new ArrayList<>();
+            ArrayList<BarEntry> authorEntries = new ArrayList<>();
+            Map<String, Long> uniqueAuthors = DbUtils.getUniqueAuthors(this);
+            boolean[] hasAuthors = new boolean[pairs.size()];
 
             int index = 0;
-            for (Pair<String, Integer> pair : pairs) {
+            for (Pair<String, Long> pair : pairs) {
                 // Add each keyword and the number of occurrences to the bar graph.
                 // The keyword will be displayed underneath each bar and the
                 // number of occurrences will be displayed on top.
                 keyWord[index] = pair.first;
                 entries.add(new BarEntry(index, pair.second != null ? pair.second : 0));
+                // Keywords saved before authors were counted get an empty bar
+                Long authors = uniqueAuthors.get(pair.first);
+                hasAuthors[index] = authors != null;
+                authorEntries.add(new BarEntry(index, authors != null ? authors : 0));
                 index++;
             }
 
             BarDataSet barDataSet = new BarDataSet(entries, "Occurrences");
             barDataSet.setColor(getResources().getColor(R.color.colorOccurrences));
+            BarDataSet authorDataSet = new BarDataSet(authorEntries, getString(R.string.graph_unique_authors));
+            authorDataSet.setColor(getResources().getColor(R.color.colorMessages));
 
-            BarData barData = new BarData(barDataSet);
-            barData.setBarWidth(0.50f);
+            BarData barData = new BarData(barDataSet, authorDataSet);
+            // Each keyword gets a group of two bars that's 1 wide: 2 * (0.3 + 0.05) + 0.3
+            final float BAR_WIDTH = 0.3f;
+            final float BAR_SPACE = 0.05f;
+            final float GROUP_SPACE = 0.3f;
+            barData.setBarWidth(BAR_WIDTH);
+            // Starting half a bar early centers each group on its keyword's index
+            barData.groupBars(-0.5f, GROUP_SPACE, BAR_SPACE);
             final float TEXT_SIZE = 14f;
             barData.setValueTextSize(TEXT_SIZE);
-            barData.setValueFormatter((value1, entry, dataSetIndex, viewPortHandler) -> String.valueOf((int) value1));
+            barData.setValueFormatter((value1, entry, dataSetIndex, viewPortHandler) ->
+                    dataSetIndex == 1 && !hasAuthors[Math.round(entry.getX())] ? "" : String.valueOf((long) value1));
 
             XAxis xAxis = chart.getXAxis();
             xAxis.setGranularity(1f);
@@ -82,6 +134,8 @@ public class GraphActivity extends AppCompatActivity {
             xAxis.setTextSize(TEXT_SIZE);
             xAxis.setCenterAxisLabels(false);
             xAxis.setValueFormatter(new IndexAxisValueFormatter(keyWord));
+            xAxis.setAxisMinimum(-0.5f);
+            xAxis.setAxisMaximum(keyWord.length - 0.5f);
 
             //--Don't want to display any y axis--//
             YAxis yAxisRight = chart.getAxisRight();
@@ -103,6 +157,148 @@ public class GraphActivity extends AppCompatActivity {
             chart.setDoubleTapToZoomEnabled(false);
             chart.setDescription(desc);
             chart.animateXY(3000, 3000);
+            chart.setOnChartValueSelectedListener(new OnChartValueSelectedListener() {
+                @Override
+                public void onValueSelected(Entry e, Highlight h) {
+                    // Grouping moved the bars off the index, but not past the middle of the group
+                    showRate(keyWord[Math.round(e.getX())]);
+                }
+
+                @Override
+                public void onNothingSelected() {
+                }
+            });
+        }
+    }
+
+    private void showRate(String keyWord) {
+        long start = DbUtils.getSeriesStart(this, keyWord);
+        if (start < 0) {
+            Toast.makeText(this, getString(R.string.rate_chart_empty, keyWord), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        rateKeyWord = keyWord;
+        rateOrigin = start;
+        rateDetailTier = null;
+
+        LineDataSet dataSet = new LineDataSet(new ArrayList<>(), getString(R.string.rate_chart_label, keyWord));
+        dataSet.setColor(getResources().getColor(R.color.colorOccurrences));
+        dataSet.setDrawCircles(false);
+        dataSet.setDrawValues(false);
+        rateChart.setData(new LineData(dataSet));
+
+        Description desc = new Description();
+        desc.setText(" ");
+        rateChart.setDescription(desc);
+        rateChart.getAxisRight().setEnabled(false);
+        rateChart.getAxisLeft().setAxisMinimum(0f);
+        rateChart.setScaleYEnabled(false);
+        XAxis xAxis = rateChart.getXAxis();
+        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
+        xAxis.setValueFormatter((value, axis) -> formatRateTime(value));
+        rateChart.setOnChartGestureListener(new ZoomListener());
+
+        loadRate(rateOrigin, System.currentTimeMillis());
+        rateChart.fitScreen();
+        chart.setVisibility(View.GONE);
+        rateChart.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Fills the rate chart with the keyword's whole history from the coarsest
+     * tier needed, except between {@code from} and {@code to} where the tier
+     * matching that window is used
+     */
+    private void loadRate(long from, long to) {
+        long now = System.currentTimeMillis();
+        OccurrenceSeries.Tier baseTier = OccurrenceSeries.Tier.forWindow(rateOrigin, now, now);
+        OccurrenceSeries.Tier detailTier = OccurrenceSeries.Tier.forWindow(from, to, now);
+        // Nothing new to show if the whole chart is already as detailed as it needs to be
+        if (detailTier == baseTier && rateDetailTier == baseTier) return;
+        rateDetailTier = detailTier;
+
+        List<OccurrenceSeries.Bucket> details = detailTier != baseTier
+                ? DbUtils.getSeries(this, rateKeyWord, detailTier, from, to)
+                : new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        for (OccurrenceSeries.Bucket bucket : DbUtils.getSeries(this, rateKeyWord, baseTier, rateOrigin, now)) {
+            // The detailed buckets replace the ones they overlap
+            boolean replaced = !details.isEmpty()
+                    && bucket.getStart() + baseTier.getBucketMillis() > from
+                    && bucket.getStart() <= to;
+            if (!replaced) entries.add(toEntry(bucket));
+        }
+        for (OccurrenceSeries.Bucket detail : details) entries.add(toEntry(detail));
+        Collections.sort(entries, (a, b) -> Float.compare(a.getX(), b.getX()));
+
+        LineDataSet dataSet = (LineDataSet) rateChart.getData().getDataSetByIndex(0);
+        dataSet.setValues(entries);
+        rateChart.getData().notifyDataChanged();
+        rateChart.notifyDataSetChanged();
+        rateChart.invalidate();
+    }
+
+    private Entry toEntry(OccurrenceSeries.Bucket bucket) {
+        return new Entry((bucket.getStart() - rateOrigin) / MINUTE_MILLIS, (float) bucket.getPerMinute());
+    }
+
+    private String formatRateTime(float minutes) {
+        String pattern;
+        if (rateDetailTier == OccurrenceSeries.Tier.MINUTE) {
+            pattern = "HH:mm";
+        } else if (rateDetailTier == OccurrenceSeries.Tier.HOUR) {
+            pattern = "MMM d HH:mm";
+        } else {
+            pattern = "MMM d";
+        }
+        Locale locale = Locale.getDefault();
+        String key = pattern + "_" + locale;
+        SimpleDateFormat format = rateFormats.get(key);
+        if (format == null) {
+            format = new SimpleDateFormat(pattern, locale);
+            rateFormats.put(key, format);
+        }
+        long time = rateOrigin + (long) (minutes * MINUTE_MILLIS);
+        return format.format(new Date(time));
+    }
+
+    /**
+     * Reloads the part of the rate chart being shown once the user is done zooming or scrolling
+     */
+    private class ZoomListener implements OnChartGestureListener {
+        @Override
+        public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            long from = rateOrigin + (long) (rateChart.getLowestVisibleX() * MINUTE_MILLIS);
+            long to = rateOrigin + (long) (rateChart.getHighestVisibleX() * MINUTE_MILLIS);
+            loadRate(from, to);
+        }
+
+        @Override
+        public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+        }
+
+        @Override
+        public void onChartLongPressed(MotionEvent me) {
+        }
+
+        @Override
+        public void onChartDoubleTapped(MotionEvent me) {
+        }
+
+        @Override
+        public void onChartSingleTapped(MotionEvent me) {
+        }
+
+        @Override
+        public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
+        }
+
+        @Override
+        public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+        }
+
+        @Override
+        public void onChartTranslate(MotionEvent me, float dX, float dY) {
         }
     }
 
@@ -116,6 +312,12 @@ public class GraphActivity extends AppCompatActivity {
 
     @Override
     public void onBackPressed() {
+        if (rateChart.getVisibility() == View.VISIBLE) {
+            rateChart.setVisibility(View.GONE);
+            chart.setVisibility(View.VISIBLE);
+            chart.highlightValues(null);
+            return;
+        }
         Toast.makeText(this, "Rotate your device to go back", Toast.LENGTH_LONG).show();
     }
 }
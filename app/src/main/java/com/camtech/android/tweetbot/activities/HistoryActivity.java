@@ -28,7 +28,7 @@ import butterknife.ButterKnife;
 
 public class HistoryActivity extends AppCompatActivity implements HistoryViewAdapter.OnItemClickListener {
 
-    private List<Pair<String, Integer>> pairs;
+    private List<Pair<String, Long>> pairs;
     private HistoryViewAdapter viewAdapter;
     private AlertDialog deleteWordDialog;
     private AlertDialog clearHistoryDialog;
@@ -62,7 +62,7 @@ public class HistoryActivity extends AppCompatActivity implements HistoryViewAda
         pairs = DbUtils.getAllKeyWords(this, null);
         if (pairs != null && !pairs.isEmpty()) {
             tvNoHistory.setVisibility(View.GONE);
-            viewAdapter = new HistoryViewAdapter(this, pairs);
+            viewAdapter = new HistoryViewAdapter(this, pairs, DbUtils.getUniqueAuthors(this));
             recyclerView.setAdapter(viewAdapter);
         } else {
             tvNoHistory.setVisibility(View.VISIBLE);
@@ -111,7 +111,7 @@ public class HistoryActivity extends AppCompatActivity implements HistoryViewAda
     }
 
     @Override
-    public void onItemDeleted(@NonNull Pair<String, Integer> pair, int position) {
+    public void onItemDeleted(@NonNull Pair<String, Long> pair, int position) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Delete Keyword")
                 .setMessage("Are you sure you want to delete this word ?")
@@ -1,10 +1,8 @@
 package com.camtech.android.tweetbot.activities;
 
 import android.app.NotificationManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.annotation.Nullable;
@@ -17,11 +15,10 @@ import android.widget.Toast;
 
 import com.camtech.android.tweetbot.R;
 import com.camtech.android.tweetbot.adapters.FragmentAdapter;
-import com.camtech.android.tweetbot.core.StreamListener;
+import com.camtech.android.tweetbot.core.CounterStore;
 import com.camtech.android.tweetbot.models.Keys;
 import com.camtech.android.tweetbot.services.TimerService;
 import com.camtech.android.tweetbot.services.TwitterService;
-import com.camtech.android.tweetbot.utils.DbUtils;
 import com.camtech.android.tweetbot.utils.ServiceUtils;
 import com.twitter.sdk.android.core.Twitter;
 import com.twitter.sdk.android.core.TwitterAuthConfig;
@@ -30,8 +27,6 @@ import com.twitter.sdk.android.core.TwitterConfig;
 import me.relex.circleindicator.CircleIndicator;
 
 public class MainActivity extends AppCompatActivity  {
-    private int wordCountFromBroadcast;
-    private String keyWord;
     private boolean doubleBackPressed = false;
 
     @Override
@@ -129,12 +124,6 @@ public class MainActivity extends AppCompatActivity  {
         new Handler().postDelayed(() -> doubleBackPressed = false, 2000);
     }
 
-    @Override
-    protected void onStart() {
-        super.onStart();
-        registerReceiver(occurrencesReceiver, new IntentFilter(StreamListener.OCCURRENCES_INTENT_FILTER));
-    }
-
     @Override
     protected void onDestroy() {
         super.onDestroy();
@@ -147,21 +136,10 @@ public class MainActivity extends AppCompatActivity  {
         // Makes sure to save the keyword and its number of occurrences
         // if the service was running while the app was swiped away
         if (ServiceUtils.isServiceRunning(this, TwitterService.class)) {
-            DbUtils.saveKeyWord(this, keyWord, wordCountFromBroadcast);
+            CounterStore.getDefault().checkpoint();
         }
         Intent timerIntent = new Intent(this, TimerService.class);
         stopService(timerIntent);
         startService(timerIntent);
-
-        unregisterReceiver(occurrencesReceiver);
     }
-
-    private BroadcastReceiver occurrencesReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            // Get the updated number of occurrences from the stream listener
-            wordCountFromBroadcast = intent.getIntExtra(StreamListener.NUM_OCCURRENCES_EXTRA, 0);
-            keyWord = intent.getStringExtra(StreamListener.KEYWORD_BROADCAST_EXTRA);
-        }
-    };
 }
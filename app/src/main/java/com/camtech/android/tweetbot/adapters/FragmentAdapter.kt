@@ -5,6 +5,7 @@ import android.support.v4.app.FragmentManager
 import android.support.v4.app.FragmentPagerAdapter
 
 import com.camtech.android.tweetbot.fragments.OccurrencesFragment
+import com.camtech.android.tweetbot.fragments.TrendingFragment
 import com.camtech.android.tweetbot.fragments.TweetPostedFragment
 
 class FragmentAdapter(fm: FragmentManager) : FragmentPagerAdapter(fm) {
@@ -12,10 +13,11 @@ class FragmentAdapter(fm: FragmentManager) : FragmentPagerAdapter(fm) {
     override fun getItem(position: Int): Fragment? {
         return when (position) {
             0 -> OccurrencesFragment()
-            1 -> TweetPostedFragment()
+            1 -> TrendingFragment()
+            2 -> TweetPostedFragment()
             else -> null
         }
     }
 
-    override fun getCount() = 2
+    override fun getCount() = 3
 }
\ No newline at end of file
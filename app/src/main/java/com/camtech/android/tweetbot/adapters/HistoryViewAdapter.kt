@@ -15,7 +15,8 @@ import kotlinx.android.synthetic.main.history_list_item.view.*
  */
 class HistoryViewAdapter(
         private val clickListener: OnItemClickListener,
-        private var pairs: MutableList<Pair<String, Int>>
+        private var pairs: MutableList<Pair<String, Long>>,
+        private val uniqueAuthors: Map<String, Long>
 ) : RecyclerView.Adapter<HistoryViewAdapter.ViewHolder>() {
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
@@ -28,7 +29,12 @@ class HistoryViewAdapter(
         val pair = pairs[position]
         with(holder.itemView) {
             tv_keyword.text = context.getString(R.string.history_keyword, pair.first)
-            tv_num_occurrences.text = context.getString(R.string.history_num_occurrences, pair.second)
+            val authors = uniqueAuthors[pair.first]
+            tv_num_occurrences.text = if (authors != null) {
+                context.getString(R.string.history_num_occurrences_authors, pair.second, authors)
+            } else {
+                context.getString(R.string.history_num_occurrences, pair.second)
+            }
         }
     }
 
@@ -39,13 +45,13 @@ class HistoryViewAdapter(
         notifyItemRemoved(position)
     }
 
-    fun resetAdapter(pairs: MutableList<Pair<String, Int>>?) {
+    fun resetAdapter(pairs: MutableList<Pair<String, Long>>?) {
         this.pairs = pairs ?: mutableListOf()
         notifyDataSetChanged()
     }
 
     interface OnItemClickListener {
-        fun onItemDeleted(pair: Pair<String, Int>, position: Int)
+        fun onItemDeleted(pair: Pair<String, Long>, position: Int)
     }
 
     inner class ViewHolder(itemView: View) : RecyclerView.ViewHolder(itemView), View.OnClickListener {
@@ -0,0 +1,44 @@
+package com.camtech.android.tweetbot.adapters
+
+import android.support.v7.widget.RecyclerView
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import com.camtech.android.tweetbot.R
+import com.camtech.android.tweetbot.core.HeavyHitters
+import com.camtech.android.tweetbot.fragments.TrendingFragment
+import kotlinx.android.synthetic.main.trending_list_item.view.*
+
+/**
+ * Custom RecyclerView adapter used in
+ * [TrendingFragment]
+ */
+class TrendingViewAdapter(
+        private var terms: List<HeavyHitters.Item>
+) : RecyclerView.Adapter<TrendingViewAdapter.ViewHolder>() {
+
+    override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
+        val view = LayoutInflater.from(parent.context).inflate(R.layout.trending_list_item, parent, false)
+        return ViewHolder(view)
+    }
+
+    override fun onBindViewHolder(holder: ViewHolder, position: Int) {
+        val item = terms[position]
+        with(holder.itemView) {
+            tv_term.text = item.term
+            // Counts that might be off show up as estimates
+            tv_term_count.text = context.getString(
+                    if (item.error > 0) R.string.trending_count_estimate else R.string.trending_count,
+                    item.count)
+        }
+    }
+
+    override fun getItemCount() = terms.size
+
+    fun setTerms(terms: List<HeavyHitters.Item>) {
+        this.terms = terms
+        notifyDataSetChanged()
+    }
+
+    class ViewHolder(itemView: View) : RecyclerView.ViewHolder(itemView)
+}
@@ -3,16 +3,23 @@ package com.camtech.android.tweetbot.adapters
 import android.content.Context
 import android.content.SharedPreferences
 import android.graphics.Color
+import android.graphics.Typeface
 import android.preference.PreferenceManager
 import android.support.v4.content.ContextCompat
 import android.support.v7.widget.RecyclerView
+import android.text.SpannableString
+import android.text.Spanned
+import android.text.style.StyleSpan
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
 import com.camtech.android.tweetbot.R
+import com.camtech.android.tweetbot.core.RetweetAggregator
 import com.camtech.android.tweetbot.models.Tweet
-import com.camtech.android.tweetbot.utils.TwitterUtils
 import kotlinx.android.synthetic.main.status_template.view.*
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
 
 class TweetViewAdapter(
         private val context: Context,
@@ -22,7 +29,13 @@ class TweetViewAdapter(
 ) : RecyclerView.Adapter<TweetViewAdapter.ViewHolder>() {
 
     private val prefs: SharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+    // Where the card for each original tweet is, so its retweet counter can be updated in place
+    private val retweetPositions = HashMap<Long, Int>()
+    private val retweetGroups = HashMap<Long, RetweetAggregator.Group>()
 
+    init {
+        indexRetweets(0)
+    }
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
         val view = LayoutInflater.from(parent.context).inflate(R.layout.status_template, parent, false)
@@ -46,10 +59,10 @@ class TweetViewAdapter(
         )
 
         with(holder.itemView) {
-            status_date.text = tweet.date
+            status_date.text = formatDate(tweet.createdAt)
             status_user.text = context.getString(R.string.status_user, tweet.screenName)
             status_message.apply {
-                text = TwitterUtils.stripUrlFromText(tweet.message)
+                text = formatMessage(tweet)
                 setTextColor(
                         if (tweet.isRetweet && colorRetweets) {
                             tweetColor
@@ -58,16 +71,89 @@ class TweetViewAdapter(
                         }
                 )
             }
+            val group = if (tweet.isRetweet) retweetGroups[tweet.retweetedId] else null
+            status_retweets.apply {
+                visibility = if (group != null) View.VISIBLE else View.GONE
+                if (group != null) {
+                    text = context.getString(R.string.status_retweets, group.count, group.perMinute)
+                }
+            }
         }
     }
 
     override fun getItemCount() = tweets.size
 
+    /**
+     * The message was already cleaned up when the tweet was received,
+     * this only makes the hashtags and mentions it found bold
+     */
+    private fun formatMessage(tweet: Tweet): CharSequence {
+        if (tweet.entityCount == 0) return tweet.message
+        val message = SpannableString(tweet.message)
+        for (i in 0 until tweet.entityCount) {
+            message.setSpan(StyleSpan(Typeface.BOLD), tweet.getEntityStart(i), tweet.getEntityEnd(i),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+        }
+        return message
+    }
+
+    /**
+     * Formats the date to appear as: Mon, February 5, 2018 01:27 AM.
+     * Formatters are expensive to create so one is kept for each locale.
+     */
+    private fun formatDate(createdAt: Long): String {
+        val locale = Locale.getDefault()
+        val format = dateFormats.getOrPut(locale) {
+            SimpleDateFormat(context.getString(R.string.date_format), locale)
+        }
+        return format.format(Date(createdAt))
+    }
+
+    /**
+     * Appends a batch of tweets to the end of the list with
+     * a single range insertion instead of one per tweet
+     */
+    fun addTweets(batch: List<Tweet>) {
+        val start = tweets.size
+        tweets.addAll(batch)
+        indexRetweets(start)
+        notifyItemRangeInserted(start, batch.size)
+    }
+
+    /**
+     * Updates the counter on the cards of tweets that were retweeted again.
+     * Originals that aren't in the list anymore are ignored.
+     */
+    fun updateRetweets(groups: List<RetweetAggregator.Group>) {
+        for (group in groups) {
+            val position = retweetPositions[group.retweetedId] ?: continue
+            retweetGroups[group.retweetedId] = group
+            notifyItemChanged(position)
+        }
+    }
+
     fun reset(tweets: MutableList<Tweet>?) {
         this.tweets = tweets ?: mutableListOf()
+        retweetPositions.clear()
+        retweetGroups.clear()
+        indexRetweets(0)
         notifyDataSetChanged()
     }
 
+    private fun indexRetweets(start: Int) {
+        for (i in start until tweets.size) {
+            val tweet = tweets[i]
+            if (tweet.isRetweet && tweet.retweetedId != 0L && tweet.retweetedId !in retweetPositions) {
+                retweetPositions[tweet.retweetedId] = i
+            }
+        }
+    }
+
+    private companion object {
+        // Only ever touched on the main thread
+        private val dateFormats = HashMap<Locale, SimpleDateFormat>()
+    }
+
     interface OnItemClickedListener {
         fun onItemClicked(v: View, tweet: Tweet, position: Int)
     }
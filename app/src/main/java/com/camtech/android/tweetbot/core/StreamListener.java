@@ -9,14 +9,20 @@ import android.os.Build;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.util.Pair;
 import android.support.v7.preference.PreferenceManager;
-import android.text.format.DateFormat;
 
 import com.camtech.android.tweetbot.R;
+import com.camtech.android.tweetbot.events.EventBus;
+import com.camtech.android.tweetbot.events.StallWarningEvent;
+import com.camtech.android.tweetbot.events.StreamBatchEvent;
+import com.camtech.android.tweetbot.events.TrendingEvent;
 import com.camtech.android.tweetbot.models.Tweet;
 import com.camtech.android.tweetbot.services.TimerService;
 import com.camtech.android.tweetbot.services.TwitterService;
 import com.camtech.android.tweetbot.utils.DbUtils;
 
+import java.util.List;
+
+import twitter4j.RawStreamListener;
 import twitter4j.StallWarning;
 import twitter4j.Status;
 import twitter4j.StatusDeletionNotice;
@@ -24,86 +30,236 @@ import twitter4j.StatusListener;
 
 /**
  * This is the core part of the app.
- * It handles receiving tweets from Twitter.
+ * It handles receiving tweets from Twitter. Every keyword
+ * shares the same stream and each status is sent to the
+ * keywords it contains using a {@link KeywordMatcher}.
+ * <p>
+ * The actual work is done by a {@link StreamProcessor}, which doesn't know
+ * about Android. This class connects it to the rest of the app: it loads the
+ * saved counts into the default {@link CounterStore} and the saved authors into
+ * the default {@link AuthorSketches}, builds the filter from
+ * the settings, posts each batch on the {@link EventBus} and handles stream errors.
+ * <p>
+ * The listener can also be registered through {@link #getRawListener()}. In that
+ * case twitter4j hands over each message as a string and the workers read the few
+ * fields we need with a {@link TweetJsonParser} instead of twitter4j building a
+ * full Status for every message.
+ * <p>
+ * The keywords can be changed while the stream is running with
+ * {@link #setKeyWords(String[])}, which keeps counting the ones that stay.
  */
-public class StreamListener implements StatusListener {
+public class StreamListener implements StatusListener, StreamProcessor.Callback {
 
-    private int wordCount;
     private Context context;
-    private Intent intentUpdateUI;
-    private String keyWord;
     private SharedPreferences sharedPreferences;
+    private StreamProcessor processor;
+    private volatile ReconnectSupervisor supervisor;
+    private final Metrics.Counter errors = Metrics.getDefault().counter("stream.errors");
+    // SharedPreferences only keeps a weak reference to its listeners so we have to hold onto this one
+    private final SharedPreferences.OnSharedPreferenceChangeListener filterPrefListener = (prefs, key) -> {
+        if (key.equals(context.getString(R.string.pref_show_retweet_streaming_key))
+                || key.equals(context.getString(R.string.pref_english_only_key))) {
+            processor.setFilter(buildFilter());
+        }
+    };
+
+    public StreamListener(Context context, String... keyWords) {
+        this(context, StreamProcessor.DEFAULT_QUEUE_CAPACITY, RingBuffer.OverflowPolicy.DROP_OLDEST,
+                StreamProcessor.DEFAULT_NUM_WORKERS, keyWords);
+    }
 
-    public static final String OCCURRENCES_INTENT_FILTER = "occurrences";
-    public static final String NEW_TWEET_BROADCAST = "tweet";
-    public static final String NUM_OCCURRENCES_EXTRA = "number";
-    public static String KEYWORD_BROADCAST_EXTRA = "keyWord";
+    /**
+     * @param queueCapacity  The max number of statuses waiting to be processed
+     * @param overflowPolicy Which status to drop when the queue is full
+     * @param numWorkers     The number of threads processing statuses
+     */
+    public StreamListener(
+            Context context,
+            int queueCapacity,
+            RingBuffer.OverflowPolicy overflowPolicy,
+            int numWorkers,
+            String... keyWords) {
 
-    public StreamListener(Context context, String keyWord) {
         this.context = context;
-        this.keyWord = keyWord;
         sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
-        // Check to see if the key word is new. If it is,
-        // set the number of occurrences to 0. If it's not, get
-        // the value from the database.
-        Pair<String, Integer> pair = DbUtils.getKeyWord(context, keyWord);
-        wordCount = pair != null && pair.second != null ? pair.second : 0;
-        // Intent to update the text in Occurrences/Messages fragment
-        intentUpdateUI = new Intent(OCCURRENCES_INTENT_FILTER);
+        loadAuthors(keyWords);
+        processor = new StreamProcessor(keyWords, loadCounts(keyWords), CounterStore.getDefault(),
+                AuthorSketches.getDefault(), queueCapacity, overflowPolicy, numWorkers, this);
+        processor.setFilter(buildFilter());
+        sharedPreferences.registerOnSharedPreferenceChangeListener(filterPrefListener);
     }
 
-
     @Override
     public void onStatus(Status status) {
-        // This formats the date to appear as: Mon, February 5, 2018 01:27 AM
-        String date = DateFormat.format("EEE, MMMM d, yyyy hh:mm aaa", status.getCreatedAt()).toString();
-        String screenName = status.getUser().getScreenName();
-        String name = status.getUser().getName();
-        // Twitter returns truncated retweets so we have to make sure
-        //we get the entire text of the tweet
-        String message = status.isRetweet()
-                ? status.getRetweetedStatus().getText()
-                : status.getText();
-        String userProfilePic = status.getUser().getBiggerProfileImageURL();
-        String userDescription = status.getUser().getDescription();
-        long id = status.getId();
-        // Check to see if the tweet is a re-tweet
-        boolean isRetweet = status.isRetweet();
-        // Check to see if the tweet was in English
-        boolean isEnglish = status.getLang().equals("en");
-        // Load the boolean values from the checkbox preference in the settings fragment
-        boolean canShowRetweets = sharedPreferences.getBoolean(
-                context.getString(R.string.pref_show_retweet_streaming_key),
-                context.getResources().getBoolean(R.bool.pref_show_retweets_streaming));
-        boolean restrictToEnglish = sharedPreferences.getBoolean(
-                context.getString(R.string.pref_english_only_key),
-                context.getResources().getBoolean(R.bool.pref_english_only_streaming));
+        // Don't do any work here, this is twitter4j's thread
+        processor.offer(status);
+    }
 
-        // Package the tweet into an intent so it can be sent via broadcast
-        intentUpdateUI.putExtra(
-                NEW_TWEET_BROADCAST,
-                new Tweet(date, screenName, name, userDescription, userProfilePic, message, keyWord, id, isRetweet));
+    /**
+     * Returns a listener that takes raw messages from the stream.
+     * Register this instead of the StreamListener itself to skip
+     * twitter4j's parsing.
+     */
+    public RawStreamListener getRawListener() {
+        return rawListener;
+    }
 
-        if (canShowRetweets && restrictToEnglish) {
-            if (isEnglish) broadcastTweet();
+    private final RawStreamListener rawListener = new RawStreamListener() {
+        @Override
+        public void onMessage(String rawString) {
+            processor.offer(rawString);
         }
 
-        if (!canShowRetweets && restrictToEnglish) {
-            if (!isRetweet && isEnglish) broadcastTweet();
+        @Override
+        public void onException(Exception ex) {
+            StreamListener.this.onException(ex);
         }
+    };
+
+    /**
+     * Starts counting a new set of keywords. Keywords that were already being
+     * tracked keep their counts, the processor saves the ones that were removed
+     * and takes them out of the counter store once the workers are done with them.
+     * The stream itself has to be refiltered separately.
+     */
+    public synchronized void setKeyWords(String[] keyWords) {
+        loadAuthors(keyWords);
+        processor.setKeyWords(keyWords, loadCounts(keyWords));
+    }
+
+    /**
+     * Returns the keywords being counted. Once the listener is shut down,
+     * these are the only ones it still has in the counter store.
+     */
+    public String[] getKeyWords() {
+        return processor.getKeyWords();
+    }
+
+    /**
+     * Returns the hashtags, mentions and pairs of words that came up the most lately
+     */
+    public List<HeavyHitters.Item> getTrendingTerms(int limit) {
+        return processor.getTrendingTerms(limit);
+    }
+
+    /**
+     * Returns the number of statuses waiting to be processed
+     */
+    public int getQueueDepth() {
+        return processor.getQueueDepth();
+    }
+
+    /**
+     * Returns the number of statuses dropped because the workers couldn't keep up
+     */
+    public long getDroppedCount() {
+        return processor.getDroppedCount();
+    }
+
+    /**
+     * Returns how full the queue of statuses waiting to be processed is, from 0 to 100
+     */
+    public int getQueueFillPercent() {
+        return processor.getQueueFillPercent();
+    }
+
+    /**
+     * Returns the number of matching statuses Twitter didn't send because of track limits
+     */
+    public long getUndeliveredCount() {
+        return processor.getUndeliveredCount();
+    }
+
+    /**
+     * Returns how full Twitter's queue was at the last stall warning, from 0 to 100
+     */
+    public int getStallPercentFull() {
+        return processor.getStallPercentFull();
+    }
 
-        if (!canShowRetweets && !restrictToEnglish) {
-            if (!isRetweet) broadcastTweet();
+    public long getStallWarningCount() {
+        return processor.getStallWarningCount();
+    }
+
+    /**
+     * Returns true if the stream fell behind recently and tweets are only being counted
+     */
+    public boolean isLightMode() {
+        return processor.isLightMode();
+    }
+
+    /**
+     * Stops the worker threads, waiting for the statuses they're on. Any status
+     * still waiting in the queue is discarded.
+     */
+    public void shutdown() {
+        processor.shutdown();
+        sharedPreferences.unregisterOnSharedPreferenceChangeListener(filterPrefListener);
+    }
+
+    private long[] loadCounts(String[] keyWords) {
+        long[] counts = new long[keyWords.length];
+        for (int i = 0; i < keyWords.length; i++) {
+            // Check to see if the key word is new. If it is,
+            // set the number of occurrences to 0. If it's not, get
+            // the value from the database.
+            Pair<String, Long> pair = DbUtils.getKeyWord(context, keyWords[i]);
+            counts[i] = pair != null && pair.second != null ? pair.second : 0;
         }
+        return counts;
+    }
 
-        if (canShowRetweets && !restrictToEnglish) {
-            broadcastTweet();
+    /**
+     * Merges the authors saved by earlier sessions into the sketch of each keyword.
+     * Merging is the same as adding each author again, so nobody is counted twice.
+     */
+    private void loadAuthors(String[] keyWords) {
+        for (String keyWord : keyWords) {
+            AuthorSketches.getDefault().load(keyWord, DbUtils.getAuthors(context, keyWord));
         }
+    }
+
+    /**
+     * Builds the filter chain from the checkbox preferences in the settings fragment
+     */
+    private StatusFilter buildFilter() {
+        boolean canShowRetweets = sharedPreferences.getBoolean(
+                context.getString(R.string.pref_show_retweet_streaming_key),
+                context.getResources().getBoolean(R.bool.pref_show_retweets_streaming));
+        boolean restrictToEnglish = sharedPreferences.getBoolean(
+                context.getString(R.string.pref_english_only_key),
+                context.getResources().getBoolean(R.bool.pref_english_only_streaming));
 
+        StatusFilter.Builder builder = new StatusFilter.Builder();
+        if (!canShowRetweets) builder.excludeRetweets();
+        if (restrictToEnglish) builder.language("en");
+        return builder.build();
+    }
+
+    /**
+     * Errors are passed to the supervisor so the stream can reconnect on its own.
+     * Without one, any error stops the stream.
+     */
+    public void setSupervisor(ReconnectSupervisor supervisor) {
+        this.supervisor = supervisor;
     }
 
     @Override
     public void onException(Exception error) {
+        errors.increment();
+        error.printStackTrace();
+        ReconnectSupervisor supervisor = this.supervisor;
+        if (supervisor != null) {
+            supervisor.onError(error);
+        } else {
+            showError(ReconnectSupervisor.Failure.classify(error));
+        }
+    }
+
+    /**
+     * Stops the stream and shows a notification explaining why
+     */
+    public void showError(ReconnectSupervisor.Failure failure) {
         Intent timerIntent = new Intent(context, TimerService.class);
 
         context.stopService(new Intent(context, TwitterService.class));
@@ -123,15 +279,23 @@ public class StreamListener implements StatusListener {
         }
         // If there's no mobile data, we want to only show
         // the notification in the TwitterService
-        if (!error.getMessage().contains("Unable to resolve host")) {
-            // Error 420 occurs when there are too many auth
-            // requests in a short amount of time
-            if (error.getMessage().contains("420")) {
-                int retryAfter = 120; // 120s ---> 2 minutes
-                timerIntent.putExtra(TimerService.INTENT_EXTRA_TIME, retryAfter * 1_000L);
-                builder.setContentText(context.getString(R.string.stream_error_420));
-            } else {
-                builder.setContentText(context.getString(R.string.stream_unknown_error));
+        if (failure != ReconnectSupervisor.Failure.DNS) {
+            switch (failure) {
+                case RATE_LIMITED:
+                    // Error 420 occurs when there are too many auth
+                    // requests in a short amount of time
+                    int retryAfter = 120; // 120s ---> 2 minutes
+                    timerIntent.putExtra(TimerService.INTENT_EXTRA_TIME, retryAfter * 1_000L);
+                    builder.setContentText(context.getString(R.string.stream_error_420));
+                    break;
+                case AUTH:
+                    builder.setContentText(context.getString(R.string.stream_error_auth));
+                    break;
+                case REJECTED:
+                    builder.setContentText(context.getString(R.string.stream_error_rejected));
+                    break;
+                default:
+                    builder.setContentText(context.getString(R.string.stream_unknown_error));
             }
             context.stopService(timerIntent);
             context.startService(timerIntent);
@@ -152,7 +316,6 @@ public class StreamListener implements StatusListener {
                 manager.notify(2, builder.build());
             }
         }
-        error.printStackTrace();
     }
 
 
@@ -162,7 +325,9 @@ public class StreamListener implements StatusListener {
     }
 
     @Override
-    public void onTrackLimitationNotice(int i) {
+    public void onTrackLimitationNotice(int numberOfLimitedStatuses) {
+        // Notices that come in as raw JSON are handled by the processor itself
+        processor.reportTrackLimitation(numberOfLimitedStatuses);
     }
 
     @Override
@@ -172,15 +337,28 @@ public class StreamListener implements StatusListener {
 
     @Override
     public void onStallWarning(StallWarning stallWarning) {
+        processor.reportStallWarning(
+                stallWarning.getCode(),
+                stallWarning.getMessage(),
+                stallWarning.getPercentFull());
     }
 
-    private void broadcastTweet() {
-        wordCount++;
-        // Send the word count to the fragments so that the UI updates
-        // along with the keyword
-        intentUpdateUI.putExtra(NUM_OCCURRENCES_EXTRA, wordCount);
-        intentUpdateUI.putExtra(KEYWORD_BROADCAST_EXTRA, keyWord);
-        // Send the tweet received to the TweetPostedFragment
-        context.sendBroadcast(intentUpdateUI);
+    @Override
+    public void onFallingBehind(String code, String message, int percentFull) {
+        // The processor has already stopped sending tweets out, this lets
+        // the service tell the user why the tweets stopped showing up
+        EventBus.getDefault().post(new StallWarningEvent(message, percentFull));
+    }
+
+    @Override
+    public void onBatch(List<Tweet> tweets, List<RetweetAggregator.Group> retweets, String[] keyWords, long[] counts) {
+        // Send the word counts to the fragments so that the UI updates
+        // along with the keywords, and the tweets to the TweetPostedFragment
+        EventBus.getDefault().post(new StreamBatchEvent(keyWords, counts, tweets, retweets));
+    }
+
+    @Override
+    public void onTrending(List<HeavyHitters.Item> terms) {
+        EventBus.getDefault().post(new TrendingEvent(terms));
     }
 }
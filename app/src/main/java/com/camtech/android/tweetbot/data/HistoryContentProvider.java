@@ -1,29 +1,39 @@
 package com.camtech.android.tweetbot.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import java.util.ArrayList;
+
 import static com.camtech.android.tweetbot.data.HistoryContract.HistoryEntry;
+import static com.camtech.android.tweetbot.data.HistoryContract.SeriesEntry;
 
 public class HistoryContentProvider extends ContentProvider {
     private static final String TAG = HistoryContentProvider.class.getSimpleName();
 
     private static final int HISTORY = 100;
     private static final int HISTORY_ID = 101;
+    private static final int SERIES = 200;
 
     private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
     static {
         sUriMatcher.addURI(HistoryContract.CONTENT_AUTHORITY, HistoryContract.PATH_HISTORY, HISTORY);
         sUriMatcher.addURI(HistoryContract.CONTENT_AUTHORITY, HistoryContract.PATH_HISTORY + "/#", HISTORY_ID);
+        sUriMatcher.addURI(HistoryContract.CONTENT_AUTHORITY, HistoryContract.PATH_SERIES, SERIES);
     }
 
     public HistoryDbHelper dbHelper;
@@ -48,7 +58,8 @@ public class HistoryContentProvider extends ContentProvider {
                         selectionArgs,
                         null,
                         null,
-                        sortOrder);
+                        sortOrder,
+                        uri.getQueryParameter(HistoryContract.QUERY_PARAMETER_LIMIT));
                 break;
             case HISTORY_ID:
                 selection = HistoryEntry._ID + "=?";
@@ -62,6 +73,16 @@ public class HistoryContentProvider extends ContentProvider {
                         null,
                         sortOrder);
                 break;
+            case SERIES:
+                cursor = database.query(
+                        SeriesEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+                break;
             default:
                 throw new IllegalArgumentException("Cannot query, unknown URI " + uri);
         }
@@ -78,6 +99,8 @@ public class HistoryContentProvider extends ContentProvider {
                 return HistoryEntry.CONTENT_LIST_TYPE;
             case HISTORY_ID:
                 return HistoryEntry.CONTENT_ITEM_TYPE;
+            case SERIES:
+                return SeriesEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
@@ -88,23 +111,211 @@ public class HistoryContentProvider extends ContentProvider {
     public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
         switch (sUriMatcher.match(uri)) {
             case HISTORY:
-                SQLiteDatabase database = dbHelper.getWritableDatabase();
-                long id = database.insert(HistoryEntry.TABLE_NAME, null, values);
+                if (values == null) return null;
+                long id = saveKeyWord(dbHelper.getWritableDatabase(), values, true);
                 // If the ID is -1, then the insertion failed. Log an error and return null.
                 if (id == -1) {
                     Log.e(TAG, "Failed to insert row for " + uri);
                     return null;
                 }
-                // Notify listeners that the data has changed
-                getContext().getContentResolver().notifyChange(uri, null);
-                // Once we know the ID of the new row in the table,
+                // Once we know the ID of the row in the table,
                 // return the new URI with the ID appended to the end of it
-                return ContentUris.withAppendedId(uri, id);
+                Uri rowUri = ContentUris.withAppendedId(HistoryEntry.CONTENT_URI, id);
+                // Notify listeners with the row's uri so they only have to read that row again.
+                // Anything watching the whole table still gets it since it's a descendant.
+                notifyChange(rowUri, isCached(uri));
+                return rowUri;
+            case SERIES:
+                if (values == null) return null;
+                addToBucket(dbHelper.getWritableDatabase(), values);
+                getContext().getContentResolver().notifyChange(uri, null);
+                return uri;
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
     }
 
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        int match = sUriMatcher.match(uri);
+        if (match != HISTORY && match != SERIES) return super.bulkInsert(uri, values);
+        // A flush adds to a few hundred buckets at most, and a checkpoint saves
+        // every keyword. Doing it in one transaction means it's only written once.
+        // A checkpoint doesn't mean the keywords were used so last_used is left alone.
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        long[] ids = new long[values.length];
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (match == HISTORY) {
+                    ids[i] = saveKeyWord(database, values[i], false);
+                } else {
+                    addToBucket(database, values[i]);
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (match == HISTORY) {
+            // Same as inserting them one at a time, there's only a few keywords
+            for (long id : ids) {
+                if (id != -1) notifyChange(ContentUris.withAppendedId(HistoryEntry.CONTENT_URI, id), isCached(uri));
+            }
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return values.length;
+    }
+
+    /**
+     * Applies every operation in one transaction, so either all of them are
+     * applied or none are, and the database is only written once
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            return results;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Handles {@link HistoryEntry#METHOD_ADD_OCCURRENCES}, which takes the
+     * keyword as the argument and the number to add in {@link HistoryEntry#EXTRA_OCCURRENCES}.
+     * The result has the keyword's new number of occurrences in the same extra.
+     */
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        if (!HistoryEntry.METHOD_ADD_OCCURRENCES.equals(method)) return super.call(method, arg, extras);
+        if (arg == null || extras == null) {
+            throw new IllegalArgumentException(method + " needs a keyword and " + HistoryEntry.EXTRA_OCCURRENCES);
+        }
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        long id;
+        long occurrences;
+        database.beginTransaction();
+        try {
+            long now = System.currentTimeMillis();
+            id = findKeyWord(database, arg);
+            if (id == -1) {
+                ContentValues values = new ContentValues();
+                values.put(HistoryEntry.COLUMN_KEYWORD, arg);
+                values.put(HistoryEntry.COLUMN_OCCURRENCES, 0);
+                values.put(HistoryEntry.COLUMN_CREATED_AT, now);
+                id = database.insert(HistoryEntry.TABLE_NAME, null, values);
+                if (id == -1) {
+                    Log.e(TAG, "Failed to insert row for " + arg);
+                    return null;
+                }
+            }
+            String[] idArgs = {String.valueOf(id)};
+            database.execSQL(
+                    "UPDATE " + HistoryEntry.TABLE_NAME
+                            + " SET " + HistoryEntry.COLUMN_OCCURRENCES + " = " + HistoryEntry.COLUMN_OCCURRENCES + " + ?, "
+                            + HistoryEntry.COLUMN_LAST_USED + " = ?"
+                            + " WHERE " + HistoryEntry._ID + " = ?",
+                    new Object[]{extras.getLong(HistoryEntry.EXTRA_OCCURRENCES), now, id});
+            occurrences = DatabaseUtils.longForQuery(database,
+                    "SELECT " + HistoryEntry.COLUMN_OCCURRENCES + " FROM " + HistoryEntry.TABLE_NAME
+                            + " WHERE " + HistoryEntry._ID + " = ?", idArgs);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        notifyChange(ContentUris.withAppendedId(HistoryEntry.CONTENT_URI, id),
+                extras.getBoolean(HistoryContract.QUERY_PARAMETER_CACHED));
+        Bundle result = new Bundle();
+        result.putLong(HistoryEntry.EXTRA_OCCURRENCES, occurrences);
+        return result;
+    }
+
+    /**
+     * Notifies with the uri of what changed, marking it with
+     * {@link HistoryContract#QUERY_PARAMETER_CACHED} if the write that changed it was
+     */
+    private void notifyChange(Uri changed, boolean cached) {
+        if (cached) {
+            changed = changed.buildUpon().appendQueryParameter(HistoryContract.QUERY_PARAMETER_CACHED, "true").build();
+        }
+        getContext().getContentResolver().notifyChange(changed, null);
+    }
+
+    private static boolean isCached(Uri uri) {
+        return uri.getBooleanQueryParameter(HistoryContract.QUERY_PARAMETER_CACHED, false);
+    }
+
+    /**
+     * Updates the row with the same keyword or adds one if there isn't one yet.
+     * Unlike letting the table's ON CONFLICT REPLACE handle it, the row isn't
+     * deleted and added again, so it keeps its id.
+     *
+     * @param used Whether to mark a keyword that's already saved as used
+     * @return The id of the row or -1 if it couldn't be added
+     */
+    private static long saveKeyWord(SQLiteDatabase database, ContentValues values, boolean used) {
+        long now = System.currentTimeMillis();
+        values = new ContentValues(values);
+        if (used && !values.containsKey(HistoryEntry.COLUMN_LAST_USED)) values.put(HistoryEntry.COLUMN_LAST_USED, now);
+        database.beginTransaction();
+        try {
+            long id = findKeyWord(database, values.getAsString(HistoryEntry.COLUMN_KEYWORD));
+            if (id == -1) {
+                if (!values.containsKey(HistoryEntry.COLUMN_CREATED_AT)) values.put(HistoryEntry.COLUMN_CREATED_AT, now);
+                if (!values.containsKey(HistoryEntry.COLUMN_LAST_USED)) values.put(HistoryEntry.COLUMN_LAST_USED, now);
+                id = database.insert(HistoryEntry.TABLE_NAME, null, values);
+            } else {
+                database.update(HistoryEntry.TABLE_NAME, values, HistoryEntry._ID + "=?", new String[]{String.valueOf(id)});
+            }
+            database.setTransactionSuccessful();
+            return id;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the id of the keyword's row or -1 if it isn't saved
+     */
+    private static long findKeyWord(SQLiteDatabase database, String keyWord) {
+        Cursor cursor = database.query(
+                HistoryEntry.TABLE_NAME, new String[]{HistoryEntry._ID},
+                HistoryEntry.COLUMN_KEYWORD + "=?", new String[]{keyWord}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Adds the occurrences to the bucket with the same keyword, tier and start, creating it if needed
+     */
+    private static void addToBucket(SQLiteDatabase database, ContentValues values) {
+        ContentValues empty = new ContentValues(values);
+        empty.put(SeriesEntry.COLUMN_OCCURRENCES, 0);
+        database.insertWithOnConflict(SeriesEntry.TABLE_NAME, null, empty, SQLiteDatabase.CONFLICT_IGNORE);
+        database.execSQL(
+                "UPDATE " + SeriesEntry.TABLE_NAME
+                        + " SET " + SeriesEntry.COLUMN_OCCURRENCES + " = " + SeriesEntry.COLUMN_OCCURRENCES + " + ?"
+                        + " WHERE " + SeriesEntry.COLUMN_KEYWORD + " = ?"
+                        + " AND " + SeriesEntry.COLUMN_TIER + " = ?"
+                        + " AND " + SeriesEntry.COLUMN_BUCKET_START + " = ?",
+                new Object[]{
+                        values.getAsLong(SeriesEntry.COLUMN_OCCURRENCES),
+                        values.getAsString(SeriesEntry.COLUMN_KEYWORD),
+                        values.getAsInteger(SeriesEntry.COLUMN_TIER),
+                        values.getAsLong(SeriesEntry.COLUMN_BUCKET_START)});
+    }
+
     @Override
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
         SQLiteDatabase database = dbHelper.getWritableDatabase();
@@ -121,6 +332,9 @@ public class HistoryContentProvider extends ContentProvider {
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
                 rowsDeleted = database.delete(HistoryEntry.TABLE_NAME, selection, selectionArgs);
                 break;
+            case SERIES:
+                rowsDeleted = database.delete(SeriesEntry.TABLE_NAME, selection, selectionArgs);
+                break;
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
@@ -132,8 +346,24 @@ public class HistoryContentProvider extends ContentProvider {
 
     @Override
     public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection, @Nullable String[] selectionArgs) {
-        // Since we won't support updating keywords,
-        // this doesn't need to be implemented yet
-        throw new UnsupportedOperationException();
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        int rowsUpdated;
+        switch (sUriMatcher.match(uri)) {
+            case HISTORY:
+                rowsUpdated = database.update(HistoryEntry.TABLE_NAME, values, selection, selectionArgs);
+                break;
+            case HISTORY_ID:
+                selection = HistoryEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                rowsUpdated = database.update(HistoryEntry.TABLE_NAME, values, selection, selectionArgs);
+                break;
+            default:
+                // Series rows are only ever added to, see insert
+                throw new IllegalArgumentException("Update is not supported for " + uri);
+        }
+        if (rowsUpdated != 0) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return rowsUpdated;
     }
 }
@@ -12,6 +12,22 @@ public class HistoryContract {
 
     public static final String PATH_HISTORY = "history";
 
+    public static final String PATH_SERIES = "series";
+
+    /**
+     * Query parameter with the most rows a query of the history should return
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /**
+     * Set on the writes {@link com.camtech.android.tweetbot.utils.DbUtils} makes to the
+     * history, which it has already applied to its keyword cache. The provider keeps it
+     * on the uri it notifies with so the cache can skip its own changes. Anything else
+     * watching the history is notified the same as always. For
+     * {@link HistoryEntry#METHOD_ADD_OCCURRENCES} it's a boolean extra instead.
+     */
+    public static final String QUERY_PARAMETER_CACHED = "cached";
+
     public static final class HistoryEntry implements BaseColumns {
 
         public static final String CONTENT_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_HISTORY;
@@ -21,5 +37,51 @@ public class HistoryContract {
         public static final String TABLE_NAME = "history";
         public static final String COLUMN_KEYWORD = "keyword";
         public static final String COLUMN_OCCURRENCES = "occurrences";
+        /**
+         * A {@link com.camtech.android.tweetbot.core.HyperLogLog} of the users who
+         * posted the occurrences, null for keywords saved before it was added
+         */
+        public static final String COLUMN_AUTHORS = "authors";
+        /**
+         * When the keyword was added and when it was last used, in milliseconds since
+         * the epoch. They're filled in when a keyword is inserted, or has occurrences
+         * added, if they aren't given. A bulk insert only updates the counts of the
+         * keywords already saved, so saving every keyword doesn't change their order.
+         * Keywords saved before these were added have their id instead, which keeps them
+         * in order and before anything saved since.
+         */
+        public static final String COLUMN_CREATED_AT = "created_at";
+        public static final String COLUMN_LAST_USED = "last_used";
+
+        /**
+         * Method for {@link android.content.ContentResolver#call(Uri, String, String, android.os.Bundle)}
+         * that adds {@link #EXTRA_OCCURRENCES} to a keyword's occurrences in one step,
+         * adding the keyword first if it isn't saved
+         */
+        public static final String METHOD_ADD_OCCURRENCES = "add_occurrences";
+        public static final String EXTRA_OCCURRENCES = "occurrences";
+    }
+
+    /**
+     * The number of occurrences of each keyword over time, see
+     * {@link com.camtech.android.tweetbot.core.OccurrenceSeries}. Inserting a row
+     * adds its occurrences to the row with the same keyword, tier and bucket start.
+     */
+    public static final class SeriesEntry implements BaseColumns {
+
+        public static final String CONTENT_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SERIES;
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SERIES);
+
+        public static final String TABLE_NAME = "series";
+        public static final String COLUMN_KEYWORD = "keyword";
+        /**
+         * One of the ids from {@link com.camtech.android.tweetbot.core.OccurrenceSeries.Tier#getId()}
+         */
+        public static final String COLUMN_TIER = "tier";
+        /**
+         * The start of the bucket in milliseconds since the epoch
+         */
+        public static final String COLUMN_BUCKET_START = "bucket_start";
+        public static final String COLUMN_OCCURRENCES = "occurrences";
     }
 }
@@ -5,24 +5,79 @@ import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteOpenHelper
 
 import com.camtech.android.tweetbot.data.HistoryContract.HistoryEntry.*
+import com.camtech.android.tweetbot.data.HistoryContract.SeriesEntry
 
 class HistoryDbHelper(context: Context) : SQLiteOpenHelper(context, DATABASE_NAME, null, DATABASE_VERSION) {
 
+    /**
+     * A change to the schema that takes the database from the version before [version] to [version]
+     */
+    private class Migration(val version: Int, val migrate: (SQLiteDatabase) -> Unit)
+
     private companion object {
-        private const val DATABASE_VERSION = 1
         private const val DATABASE_NAME = "history.db"
+
+        // Only ever add to the end of this. A database that's already at a
+        // migration's version has run it, so changing one does nothing for them.
+        private val MIGRATIONS = listOf(
+                // The number of occurrences over time
+                Migration(2) { db -> createSeriesTable(db) },
+                // The author sketches
+                Migration(3) { db -> db.execSQL("ALTER TABLE $TABLE_NAME ADD COLUMN $COLUMN_AUTHORS BLOB;") },
+                // When each keyword was added and last used
+                Migration(4) { db -> addTimestamps(db) })
+
+        private val DATABASE_VERSION = MIGRATIONS.last().version
+
+        private fun createSeriesTable(db: SQLiteDatabase) {
+            // The unique index is also what graphs of a keyword are read from
+            db.execSQL("CREATE TABLE ${SeriesEntry.TABLE_NAME} (" +
+                    "$_ID INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "${SeriesEntry.COLUMN_KEYWORD} TEXT NOT NULL, " +
+                    "${SeriesEntry.COLUMN_TIER} INTEGER NOT NULL, " +
+                    "${SeriesEntry.COLUMN_BUCKET_START} INTEGER NOT NULL, " +
+                    "${SeriesEntry.COLUMN_OCCURRENCES} INTEGER NOT NULL DEFAULT 0, " +
+                    "UNIQUE(${SeriesEntry.COLUMN_KEYWORD}, ${SeriesEntry.COLUMN_TIER}, ${SeriesEntry.COLUMN_BUCKET_START}));")
+            // Used when old buckets are deleted
+            db.execSQL("CREATE INDEX series_tier_start ON ${SeriesEntry.TABLE_NAME} " +
+                    "(${SeriesEntry.COLUMN_TIER}, ${SeriesEntry.COLUMN_BUCKET_START});")
+        }
+
+        private fun addTimestamps(db: SQLiteDatabase) {
+            db.execSQL("ALTER TABLE $TABLE_NAME ADD COLUMN $COLUMN_CREATED_AT INTEGER NOT NULL DEFAULT 0;")
+            db.execSQL("ALTER TABLE $TABLE_NAME ADD COLUMN $COLUMN_LAST_USED INTEGER NOT NULL DEFAULT 0;")
+            // There's no way to know when the keywords already saved were used, but their
+            // ids are in the order they were last saved. Any real time is bigger than an
+            // id so keywords used from now on still come after them.
+            db.execSQL("UPDATE $TABLE_NAME SET $COLUMN_CREATED_AT = $_ID, $COLUMN_LAST_USED = $_ID;")
+            // These make the most recent keyword, and the keywords sorted by
+            // any of these columns, an index lookup instead of reading every row
+            db.execSQL("CREATE INDEX history_last_used ON $TABLE_NAME ($COLUMN_LAST_USED);")
+            db.execSQL("CREATE INDEX history_created_at ON $TABLE_NAME ($COLUMN_CREATED_AT);")
+            db.execSQL("CREATE INDEX history_occurrences ON $TABLE_NAME ($COLUMN_OCCURRENCES);")
+        }
     }
 
     override fun onCreate(db: SQLiteDatabase) {
+        // This is the table as it was in version 1, the migrations take it from there
+        // so a new database always ends up the same as one that was upgraded
         val createTable = "CREATE TABLE $TABLE_NAME ($_ID INTEGER PRIMARY KEY AUTOINCREMENT, $COLUMN_KEYWORD TEXT, $COLUMN_OCCURRENCES INTEGER, UNIQUE($COLUMN_KEYWORD) ON CONFLICT REPLACE);"
         // UNIQUE(COLUMN_KEYWORD) is used to make sure that no duplicate
         // key words are added. In the event that the same word is added
         // again, the number of occurrences will be overridden for that word
         db.execSQL(createTable)
+        migrate(db, 1, DATABASE_VERSION)
     }
 
     override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
-        // It isn't likely that the schema for this database is
-        // going to change so onUpgrade hasn't been implemented yet
+        migrate(db, oldVersion, newVersion)
+    }
+
+    /**
+     * Runs every migration after [fromVersion] up to and including [toVersion], in order.
+     * This is already called inside a transaction, so if one fails none of them are kept.
+     */
+    private fun migrate(db: SQLiteDatabase, fromVersion: Int, toVersion: Int) {
+        MIGRATIONS.filter { it.version in (fromVersion + 1)..toVersion }.forEach { it.migrate(db) }
     }
 }
@@ -0,0 +1,180 @@
+package com.camtech.android.tweetbot.events;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A simple in-process publish/subscribe bus used to pass events between the
+ * stream, the services and the UI. Unlike {@link android.content.Context#sendBroadcast},
+ * nothing is marshalled into a Parcel and nothing leaves the app's process,
+ * so events are just handed over as plain (immutable) objects.
+ * <p>
+ * Subscribers pick which thread they want to be called on, see {@link ThreadMode}.
+ */
+public final class EventBus {
+
+    public enum ThreadMode {
+        /**
+         * Called right away on whichever thread posted the event
+         */
+        POSTING,
+        /**
+         * Called on the main thread
+         */
+        MAIN,
+        /**
+         * Called on a background thread shared by every subscriber of the bus
+         */
+        BACKGROUND
+    }
+
+    public interface Subscriber<E> {
+        void onEvent(E event);
+    }
+
+    private static final EventBus DEFAULT = new EventBus();
+
+    private final ConcurrentHashMap<Class<?>, List<Subscription<?>>> subscriptions = new ConcurrentHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Handler backgroundHandler;
+
+    public static EventBus getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registers a subscriber for every event of the given type. The subscriber
+     * stays registered until {@link Subscription#unsubscribe()} is called.
+     */
+    public <E> Subscription<E> subscribe(Class<E> eventType, ThreadMode threadMode, Subscriber<E> subscriber) {
+        Subscription<E> subscription = new Subscription<>(this, eventType, threadMode, subscriber);
+        List<Subscription<?>> list = subscriptions.get(eventType);
+        if (list == null) {
+            list = new CopyOnWriteArrayList<>();
+            List<Subscription<?>> existing = subscriptions.putIfAbsent(eventType, list);
+            if (existing != null) list = existing;
+        }
+        list.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Same as {@link #subscribe(Class, ThreadMode, Subscriber)} except the subscriber
+     * is automatically removed once the owner (i.e. an Activity or Fragment) is destroyed.
+     */
+    public <E> Subscription<E> subscribe(
+            LifecycleOwner owner,
+            Class<E> eventType,
+            ThreadMode threadMode,
+            Subscriber<E> subscriber) {
+
+        Subscription<E> subscription = subscribe(eventType, threadMode, subscriber);
+        owner.getLifecycle().addObserver(new LifecycleBinding(owner, subscription));
+        return subscription;
+    }
+
+    /**
+     * Sends the event to every subscriber of its type
+     */
+    @SuppressWarnings("unchecked")
+    public void post(Object event) {
+        List<Subscription<?>> list = subscriptions.get(event.getClass());
+        if (list == null) return;
+        for (Subscription<?> subscription : list) {
+            deliver((Subscription<Object>) subscription, event);
+        }
+    }
+
+    private void deliver(Subscription<Object> subscription, Object event) {
+        switch (subscription.threadMode) {
+            case POSTING:
+                subscription.dispatch(event);
+                break;
+            case MAIN:
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    subscription.dispatch(event);
+                } else {
+                    mainHandler.post(() -> subscription.dispatch(event));
+                }
+                break;
+            case BACKGROUND:
+                getBackgroundHandler().post(() -> subscription.dispatch(event));
+                break;
+        }
+    }
+
+    private synchronized Handler getBackgroundHandler() {
+        if (backgroundHandler == null) {
+            HandlerThread thread = new HandlerThread("EventBus");
+            thread.start();
+            backgroundHandler = new Handler(thread.getLooper());
+        }
+        return backgroundHandler;
+    }
+
+    void remove(Subscription<?> subscription) {
+        List<Subscription<?>> list = subscriptions.get(subscription.eventType);
+        if (list != null) list.remove(subscription);
+    }
+
+    /**
+     * A handle to a registered subscriber
+     */
+    public static final class Subscription<E> {
+        private final EventBus bus;
+        private final Class<E> eventType;
+        private final ThreadMode threadMode;
+        private final Subscriber<E> subscriber;
+        private volatile boolean active = true;
+
+        private Subscription(EventBus bus, Class<E> eventType, ThreadMode threadMode, Subscriber<E> subscriber) {
+            this.bus = bus;
+            this.eventType = eventType;
+            this.threadMode = threadMode;
+            this.subscriber = subscriber;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void unsubscribe() {
+            active = false;
+            bus.remove(this);
+        }
+
+        private void dispatch(E event) {
+            // Events that were already queued for another thread
+            // shouldn't reach a subscriber that has since left
+            if (active) subscriber.onEvent(event);
+        }
+    }
+
+    /**
+     * Removes a subscription once its lifecycle owner is destroyed
+     */
+    private static final class LifecycleBinding implements LifecycleObserver {
+        private final LifecycleOwner owner;
+        private final Subscription<?> subscription;
+
+        LifecycleBinding(LifecycleOwner owner, Subscription<?> subscription) {
+            this.owner = owner;
+            this.subscription = subscription;
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        void onDestroy() {
+            subscription.unsubscribe();
+            owner.getLifecycle().removeObserver(this);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.camtech.android.tweetbot.events;
+
+import com.camtech.android.tweetbot.services.TwitterService;
+
+/**
+ * Posted when the {@link TwitterService} starts or stops
+ */
+public final class ServiceStateEvent {
+
+    private final boolean running;
+
+    public ServiceStateEvent(boolean running) {
+        this.running = running;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,30 @@
+package com.camtech.android.tweetbot.events;
+
+import com.camtech.android.tweetbot.core.StreamListener;
+
+/**
+ * Posted by the {@link StreamListener} when Twitter warns that the stream
+ * is falling behind. Until the warnings stop, the batches that follow
+ * only carry the counts and no tweets.
+ */
+public final class StallWarningEvent {
+
+    private final String message;
+    private final int percentFull;
+
+    public StallWarningEvent(String message, int percentFull) {
+        this.message = message;
+        this.percentFull = percentFull;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns how full Twitter's queue of statuses for us is, from 0 to 100
+     */
+    public int getPercentFull() {
+        return percentFull;
+    }
+}
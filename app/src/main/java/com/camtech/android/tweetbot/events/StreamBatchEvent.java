@@ -0,0 +1,93 @@
+package com.camtech.android.tweetbot.events;
+
+import com.camtech.android.tweetbot.core.RetweetAggregator;
+import com.camtech.android.tweetbot.core.StreamListener;
+import com.camtech.android.tweetbot.models.Tweet;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Posted by the {@link StreamListener} with every tweet received since the
+ * last batch along with the number of occurrences of each keyword.
+ * Retweets of an original that was already sent only show up as an
+ * updated count in {@link #getRetweets()}.
+ */
+public final class StreamBatchEvent {
+
+    private final String[] keyWords;
+    private final long[] counts;
+    private final List<Tweet> tweets;
+    private final List<RetweetAggregator.Group> retweets;
+    private final long postedNanos = System.nanoTime();
+
+    /**
+     * @param keyWords Every keyword tracked by the stream
+     * @param counts   The number of occurrences of each keyword, in the same order
+     * @param tweets   The tweets received since the last batch
+     * @param retweets The originals that were retweeted again since the last batch
+     */
+    public StreamBatchEvent(
+            String[] keyWords,
+            long[] counts,
+            List<Tweet> tweets,
+            List<RetweetAggregator.Group> retweets) {
+
+        this.keyWords = keyWords.clone();
+        this.counts = counts.clone();
+        this.tweets = Collections.unmodifiableList(tweets);
+        this.retweets = Collections.unmodifiableList(retweets);
+    }
+
+    /**
+     * Returns the number of keywords tracked by the stream
+     */
+    public int size() {
+        return keyWords.length;
+    }
+
+    public String getKeyWord(int index) {
+        return keyWords[index];
+    }
+
+    public long getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Returns the position of a keyword or -1 if the stream isn't tracking it
+     */
+    public int indexOf(String keyWord) {
+        for (int i = 0; i < keyWords.length; i++) {
+            if (keyWords[i].equals(keyWord)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if the stream that sent this batch was tracking exactly these keywords
+     */
+    public boolean hasKeyWords(String[] keyWords) {
+        return Arrays.equals(this.keyWords, keyWords);
+    }
+
+    public String[] getKeyWords() {
+        return keyWords.clone();
+    }
+
+    public List<Tweet> getTweets() {
+        return tweets;
+    }
+
+    public List<RetweetAggregator.Group> getRetweets() {
+        return retweets;
+    }
+
+    /**
+     * Returns when the batch was sent, from {@link System#nanoTime()}
+     */
+    public long getPostedNanos() {
+        return postedNanos;
+    }
+}
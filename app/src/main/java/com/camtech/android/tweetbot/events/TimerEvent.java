@@ -0,0 +1,20 @@
+package com.camtech.android.tweetbot.events;
+
+import com.camtech.android.tweetbot.services.TimerService;
+
+/**
+ * Posted every second by the {@link TimerService} with
+ * the amount of time left before the stream can be restarted
+ */
+public final class TimerEvent {
+
+    private final long secondsLeft;
+
+    public TimerEvent(long secondsLeft) {
+        this.secondsLeft = secondsLeft;
+    }
+
+    public long getSecondsLeft() {
+        return secondsLeft;
+    }
+}
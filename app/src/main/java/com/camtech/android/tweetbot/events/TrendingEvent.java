@@ -0,0 +1,25 @@
+package com.camtech.android.tweetbot.events;
+
+import com.camtech.android.tweetbot.core.HeavyHitters;
+import com.camtech.android.tweetbot.core.StreamListener;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Posted by the {@link StreamListener} every couple of seconds with the
+ * hashtags, mentions and pairs of words that came up the most lately
+ * in the tweets matching the keywords, most first.
+ */
+public final class TrendingEvent {
+
+    private final List<HeavyHitters.Item> terms;
+
+    public TrendingEvent(List<HeavyHitters.Item> terms) {
+        this.terms = Collections.unmodifiableList(terms);
+    }
+
+    public List<HeavyHitters.Item> getTerms() {
+        return terms;
+    }
+}
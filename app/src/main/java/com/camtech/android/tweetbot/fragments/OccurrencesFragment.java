@@ -1,10 +1,8 @@
 package com.camtech.android.tweetbot.fragments;
 
 import android.app.NotificationManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.os.Vibrator;
 import android.support.annotation.NonNull;
@@ -28,7 +26,12 @@ import android.widget.Toast;
 import com.camtech.android.tweetbot.R;
 import com.camtech.android.tweetbot.activities.HistoryActivity;
 import com.camtech.android.tweetbot.activities.SettingsActivity;
+import com.camtech.android.tweetbot.core.CounterStore;
 import com.camtech.android.tweetbot.core.StreamListener;
+import com.camtech.android.tweetbot.events.EventBus;
+import com.camtech.android.tweetbot.events.ServiceStateEvent;
+import com.camtech.android.tweetbot.events.StreamBatchEvent;
+import com.camtech.android.tweetbot.events.TimerEvent;
 import com.camtech.android.tweetbot.services.TimerService;
 import com.camtech.android.tweetbot.services.TwitterService;
 import com.camtech.android.tweetbot.utils.DbUtils;
@@ -49,8 +52,8 @@ public class OccurrencesFragment extends Fragment {
     private final String TAG = OccurrencesFragment.class.getSimpleName();
     private final String KEYWORD_KEY = "keyword";
     private final String OCCURRENCE_KEY = "occurrence";
-    private int numOccurrences;
-    private int wordCount;
+    private long numOccurrences;
+    private long wordCount;
     private String keyWord;
     private AlertDialog resetKeyWordDialog;
     private static int timeRemaining;
@@ -75,11 +78,20 @@ public class OccurrencesFragment extends Fragment {
         // make too many auth calls in a short amount of time
         timerIntent = new Intent(requireContext(), TimerService.class);
 
+        EventBus bus = EventBus.getDefault();
+        // Updates tvNumOccurrences
+        bus.subscribe(this, StreamBatchEvent.class, EventBus.ThreadMode.MAIN, this::onStreamBatch);
+        // Makes sure the button text updates
+        bus.subscribe(this, ServiceStateEvent.class, EventBus.ThreadMode.MAIN, event -> updateButtonText());
+        // Gets the time since the last query
+        bus.subscribe(this, TimerEvent.class, EventBus.ThreadMode.MAIN,
+                event -> timeRemaining = (int) event.getSecondsLeft());
+
         if (savedInstanceState == null) {
             initViews();
         } else {
             keyWord = savedInstanceState.getString(KEYWORD_KEY);
-            numOccurrences = savedInstanceState.getInt(OCCURRENCE_KEY);
+            numOccurrences = savedInstanceState.getLong(OCCURRENCE_KEY);
             tvKeyword.setText(getString(R.string.tv_keyword, keyWord));
             tvNumOccurrences.setText(String.valueOf(numOccurrences));
         }
@@ -111,10 +123,7 @@ public class OccurrencesFragment extends Fragment {
                 // In the event that the user changed the keyword while the service
                 // was running, we need to get the vale of the new keyword from the
                 // database when the service starts
-                Pair<String, Integer> pair = DbUtils.getKeyWord(requireContext(), keyWord);
-                tvNumOccurrences.setText(pair != null && pair.second != null
-                        ? String.valueOf(pair.second)
-                        : String.valueOf(0));
+                tvNumOccurrences.setText(String.valueOf(getCount(keyWord)));
             } else {
                 Toast.makeText(
                         getContext(),
@@ -155,20 +164,9 @@ public class OccurrencesFragment extends Fragment {
         }
     }
 
-    @Override
-    public void onPause() {
-        super.onPause();
-        requireContext().unregisterReceiver(updateButtonReceiver);
-    }
-
     @Override
     public void onResume() {
         super.onResume();
-        requireContext().registerReceiver(timeRemainingReceiver, new IntentFilter(TimerService.BROADCAST_TIME));
-        // Receiver to update tvNumOccurrences
-        requireContext().registerReceiver(occurrencesReceiver, new IntentFilter(StreamListener.OCCURRENCES_INTENT_FILTER));
-        // Receiver to make sure the button text updates
-        requireContext().registerReceiver(updateButtonReceiver, new IntentFilter(TwitterService.BROADCAST_UPDATE));
         // Since Android OS might stop the service in the background without cancelling
         // the notification, we need to check if the service is running when the app is
         // re-opened.
@@ -178,8 +176,8 @@ public class OccurrencesFragment extends Fragment {
                 manager.cancel(TwitterService.ID_STREAM_CONNECTED);
             }
         }
-        Pair<String, Integer> pair = DbUtils.getKeyWord(requireContext(), keyWord);
-        if (pair == null) tvNumOccurrences.setText(String.valueOf(0));
+        // The count might have gone up while the fragment was in the background
+        tvNumOccurrences.setText(String.valueOf(getCount(keyWord)));
 
         updateButtonText();
     }
@@ -188,7 +186,7 @@ public class OccurrencesFragment extends Fragment {
     public void onSaveInstanceState(@NonNull Bundle outState) {
         super.onSaveInstanceState(outState);
         outState.putString(KEYWORD_KEY, keyWord);
-        outState.putInt(OCCURRENCE_KEY, wordCount);
+        outState.putLong(OCCURRENCE_KEY, wordCount);
     }
 
     @Override
@@ -200,13 +198,6 @@ public class OccurrencesFragment extends Fragment {
         if (resetKeyWordDialog != null) resetKeyWordDialog.dismiss();
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        requireContext().unregisterReceiver(occurrencesReceiver);
-        requireContext().unregisterReceiver(timeRemainingReceiver);
-    }
-
     private void updateButtonText() {
         startStop.setText(
                 ServiceUtils.isServiceRunning(requireContext(), TwitterService.class)
@@ -217,7 +208,7 @@ public class OccurrencesFragment extends Fragment {
     private void initViews() {
         // Load the last keyword from the database into the views
         // or show the default keyword if the database is empty
-        Pair<String, Integer> pair = DbUtils.getMostRecentWord(getContext());
+        Pair<String, Long> pair = DbUtils.getMostRecentWord(getContext());
         if (pair != null) {
             keyWord = pair.first;
             numOccurrences = pair.second != null ? pair.second : 0;
@@ -260,21 +251,28 @@ public class OccurrencesFragment extends Fragment {
                 // the keyword that's already set. If it is, just close this dialog. If it's not,
                 // we'll then check if the word already exists in the database
                 if (!keyWordFromTextView.equals(keyWord)) {
-                    Pair<String, Integer> pair = DbUtils.getKeyWord(getContext(), keyWordFromTextView);
+                    Pair<String, Long> pair = DbUtils.getKeyWord(getContext(), keyWordFromTextView);
                     // The word exists in the database so we'll grab the pair and set the views
                     if (pair != null) {
                         keyWord = pair.first;
-                        tvKeyword.setText(getString(R.string.tv_keyword, pair.first));
-                        if (!ServiceUtils.isServiceRunning(requireContext(), TwitterService.class)) {
-                            tvNumOccurrences.setText(String.valueOf(pair.second));
-                        }
+                        wordCount = getCount(keyWord);
                     } else {
                         keyWord = keyWordFromTextView;
-                        tvKeyword.setText(getString(R.string.tv_keyword, keyWordFromTextView));
-                        DbUtils.saveKeyWord(requireContext(), keyWord, 0);
-                        if (!ServiceUtils.isServiceRunning(requireContext(), TwitterService.class)) {
-                            tvNumOccurrences.setText(String.valueOf(0));
-                        }
+                        wordCount = 0;
+                    }
+                    // Adding nothing marks it as the most recent keyword (saving it if it's new)
+                    // without touching a count the stream might've saved already
+                    DbUtils.addOccurrences(requireContext(), keyWord, 0);
+                    tvKeyword.setText(getString(R.string.tv_keyword, keyWord));
+                    // The stream keeps counting from this number
+                    tvNumOccurrences.setText(String.valueOf(wordCount));
+                    if (ServiceUtils.isServiceRunning(requireContext(), TwitterService.class)) {
+                        // Switch the running stream over to the new word instead of
+                        // restarting it, so there's no need to wait for the timer
+                        Intent changeIntent = new Intent(getContext(), TwitterService.class);
+                        changeIntent.setAction(TwitterService.ACTION_CHANGE_KEYWORDS);
+                        changeIntent.putExtra(Intent.EXTRA_TEXT, keyWord);
+                        requireContext().startService(changeIntent);
                     }
                     resetKeyWordDialog.dismiss();
                 }
@@ -283,6 +281,18 @@ public class OccurrencesFragment extends Fragment {
         });
     }
 
+    /**
+     * Returns the number of occurrences of a keyword. While the stream is counting
+     * the keyword, the database only has the count from the last checkpoint so
+     * the count is read from the {@link CounterStore} instead.
+     */
+    private long getCount(String keyWord) {
+        long count = CounterStore.getDefault().get(keyWord);
+        if (count >= 0) return count;
+        Pair<String, Long> pair = DbUtils.getKeyWord(requireContext(), keyWord);
+        return pair != null && pair.second != null ? pair.second : 0;
+    }
+
     private void vibrate() {
         Vibrator v = (Vibrator) requireContext().getSystemService(Context.VIBRATOR_SERVICE);
         if (v != null) {
@@ -291,36 +301,16 @@ public class OccurrencesFragment extends Fragment {
     }
 
     /**
-     * Receiver to update the number of occurrences and store
-     * it in a SharedPreference
+     * Updates the number of occurrences of the keyword being shown
      *
      * @see StreamListener#onStatus(Status)
      */
-    private BroadcastReceiver occurrencesReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            // Get the updated number of occurrences from the stream listener
-            wordCount = intent.getIntExtra(StreamListener.NUM_OCCURRENCES_EXTRA, 0);
-            tvNumOccurrences.setText(String.valueOf(wordCount));
-        }
-    };
-
-    private BroadcastReceiver updateButtonReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            updateButtonText();
-        }
-    };
-
-    /**
-     * Receiver to get the time since the last query
-     *
-     * @see TimerService
-     */
-    private BroadcastReceiver timeRemainingReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            timeRemaining = (int) intent.getLongExtra(TimerService.INTENT_TIME_LEFT, 0);
-        }
-    };
+    private void onStreamBatch(StreamBatchEvent event) {
+        // The stream might be tracking more than one keyword so
+        // we only care about the occurrences of the one being shown
+        int index = event.indexOf(keyWord);
+        if (index < 0) return;
+        wordCount = event.getCount(index);
+        tvNumOccurrences.setText(String.valueOf(wordCount));
+    }
 }
@@ -24,6 +24,7 @@ import android.widget.Toast;
 import com.cameron.materialcolorpicker.ColorPicker;
 import com.cameron.materialcolorpicker.ColorPickerCallback;
 import com.camtech.android.tweetbot.R;
+import com.camtech.android.tweetbot.activities.DiagnosticsActivity;
 import com.camtech.android.tweetbot.activities.SettingsActivity;
 import com.camtech.android.tweetbot.services.TwitterService;
 import com.camtech.android.tweetbot.utils.ServiceUtils;
@@ -168,6 +169,8 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
                         }
                     });
             colorPicker.show();
+        } else if (preference.getKey().equals(getString(R.string.pref_diagnostics_key))) {
+            startActivity(new Intent(getContext(), DiagnosticsActivity.class));
         }
         return true;
     }
@@ -0,0 +1,54 @@
+package com.camtech.android.tweetbot.fragments;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.camtech.android.tweetbot.R;
+import com.camtech.android.tweetbot.adapters.TrendingViewAdapter;
+import com.camtech.android.tweetbot.core.TrendingTerms;
+import com.camtech.android.tweetbot.events.EventBus;
+import com.camtech.android.tweetbot.events.TrendingEvent;
+
+import java.util.ArrayList;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+
+/**
+ * Shows the hashtags, mentions and pairs of words that are coming up
+ * the most in the tweets matching the keywords, see {@link TrendingTerms}
+ */
+public class TrendingFragment extends Fragment {
+
+    private TrendingViewAdapter viewAdapter;
+
+    @BindView(R.id.recycler_view) RecyclerView recyclerView;
+    @BindView(R.id.empty_view) TextView emptyView;
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View rootView = inflater.inflate(R.layout.fragment_trending, container, false);
+        ButterKnife.bind(this, rootView);
+        // The list is replaced every couple of seconds while
+        // the stream is running so there's nothing to save
+        viewAdapter = new TrendingViewAdapter(new ArrayList<>());
+        recyclerView.setLayoutManager(new LinearLayoutManager(getContext(), LinearLayoutManager.VERTICAL, false));
+        recyclerView.setAdapter(viewAdapter);
+        EventBus.getDefault().subscribe(this, TrendingEvent.class, EventBus.ThreadMode.MAIN, this::onTrending);
+        return rootView;
+    }
+
+    private void onTrending(TrendingEvent event) {
+        viewAdapter.setTerms(event.getTerms());
+        emptyView.setVisibility(event.getTerms().isEmpty() ? View.VISIBLE : View.GONE);
+    }
+}
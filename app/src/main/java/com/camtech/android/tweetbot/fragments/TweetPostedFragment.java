@@ -1,10 +1,6 @@
 package com.camtech.android.tweetbot.fragments;
 
 import android.annotation.SuppressLint;
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -14,6 +10,7 @@ import android.support.v4.app.Fragment;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -23,12 +20,17 @@ import android.widget.TextView;
 
 import com.camtech.android.tweetbot.R;
 import com.camtech.android.tweetbot.adapters.TweetViewAdapter;
+import com.camtech.android.tweetbot.core.Metrics;
 import com.camtech.android.tweetbot.core.StreamListener;
+import com.camtech.android.tweetbot.events.EventBus;
+import com.camtech.android.tweetbot.events.StreamBatchEvent;
 import com.camtech.android.tweetbot.models.Tweet;
+import com.camtech.android.tweetbot.models.TweetCodec;
 import com.camtech.android.tweetbot.utils.TwitterUtils;
 import com.squareup.picasso.Picasso;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -42,12 +44,13 @@ import twitter4j.Status;
 public class TweetPostedFragment extends Fragment implements TweetViewAdapter.OnItemClickedListener {
 
     private final String TAG = TweetPostedFragment.class.getSimpleName();
-    private final String CURRENT_KEYWORD_KEY = "currentKeyWord";
+    private final String CURRENT_KEYWORDS_KEY = "currentKeyWords";
     private TweetViewAdapter viewAdapter;
     private ArrayList<Tweet> tweets;
     private boolean isRecyclerViewAtBottom;
-    private static String currentKeyWord;
+    private static String[] currentKeyWords;
     private BottomSheetDialog bottomSheetDialog;
+    private final Metrics.Histogram renderLatency = Metrics.getDefault().histogram("ui.batch_to_frame");
 
     @BindView(R.id.recycler_view) RecyclerView recyclerView;
     @BindView(R.id.empty_view) TextView emptyView;
@@ -64,13 +67,13 @@ public class TweetPostedFragment extends Fragment implements TweetViewAdapter.On
         // Re-load the array list from the saved state. This happens when
         // the device is rotated or in the event that the user leaves the
         // app then re-opens it. We also have to keep track of the current
-        // key word so that the adapter knows when to reset the list
+        // key words so that the adapter knows when to reset the list
         if (savedInstanceState == null) {
             tweets = new ArrayList<>();
-            currentKeyWord = "";
+            currentKeyWords = new String[0];
         } else {
-            tweets = savedInstanceState.getParcelableArrayList(TAG);
-            currentKeyWord = savedInstanceState.getString(CURRENT_KEYWORD_KEY);
+            tweets = new ArrayList<>(TweetCodec.decode(savedInstanceState.getByteArray(TAG)));
+            currentKeyWords = savedInstanceState.getStringArray(CURRENT_KEYWORDS_KEY);
         }
         viewAdapter = new TweetViewAdapter(requireContext(), tweets, this);
 
@@ -82,6 +85,8 @@ public class TweetPostedFragment extends Fragment implements TweetViewAdapter.On
         recyclerView.setAdapter(viewAdapter);
         // Used to listen for when the RecyclerView reaches the bottom
         recyclerView.addOnScrollListener(scrollListener);
+        // Listen for new tweets
+        EventBus.getDefault().subscribe(this, StreamBatchEvent.class, EventBus.ThreadMode.MAIN, this::onStreamBatch);
 
         if (tweets != null && tweets.size() == 0) emptyView.setVisibility(View.VISIBLE);
         else emptyView.setVisibility(View.GONE);
@@ -117,39 +122,15 @@ public class TweetPostedFragment extends Fragment implements TweetViewAdapter.On
         // This is used to save the array list when the device rotates.
         // This way, all the tweets are shown again when onCreateView is called.
         // If the number of tweets is greater than the limit, grab the 500 most
-        // recent tweets and save that instead
+        // recent tweets and save that instead. The tweets are saved using the
+        // compact TweetCodec format rather than as a list of Parcelables
         if (tweets.size() <= MAX_PARCEL_SIZE) {
-            outState.putParcelableArrayList(TAG, tweets);
+            outState.putByteArray(TAG, TweetCodec.encode(tweets));
         } else {
-            // Add the recent tweets to a temporary array list
-            ArrayList<Tweet> mostRecentTweets = new ArrayList<>();
-
-            int startingIndex = (tweets.size() - 1) - MAX_PARCEL_SIZE;
-
-            for (int i = startingIndex; i < tweets.size(); i++) {
-                mostRecentTweets.add(tweets.get(i));
-            }
-            outState.putParcelableArrayList(TAG, mostRecentTweets);
+            List<Tweet> mostRecentTweets = tweets.subList(tweets.size() - MAX_PARCEL_SIZE, tweets.size());
+            outState.putByteArray(TAG, TweetCodec.encode(mostRecentTweets));
         }
-        outState.putString(CURRENT_KEYWORD_KEY, currentKeyWord);
-    }
-
-    @Override
-    public void onResume() {
-        super.onResume();
-        //Receiver to listen for new tweets
-        requireContext().registerReceiver(tweetPostedReceiver, new IntentFilter(StreamListener.OCCURRENCES_INTENT_FILTER));
-    }
-
-    @Override
-    public void onPause() {
-        super.onPause();
-    }
-
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        requireContext().unregisterReceiver(tweetPostedReceiver);
+        outState.putStringArray(CURRENT_KEYWORDS_KEY, currentKeyWords);
     }
 
     @Override
@@ -213,40 +194,32 @@ public class TweetPostedFragment extends Fragment implements TweetViewAdapter.On
     }
 
     /**
-     * Broadcast used receiver to update the UI of this fragment,
-     * i.e., add new cards to the card view.
+     * Used to update the UI of this fragment, i.e., add new cards to the
+     * card view. Tweets arrive in batches so the whole batch is inserted at once.
      */
-    private BroadcastReceiver tweetPostedReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent.getExtras() != null) {
-                // Get the tweet object passed from the stream listener
-                Tweet tweet = intent.getExtras().getParcelable(StreamListener.NEW_TWEET_BROADCAST);
-
-                // If the keyword has changed, we need to reset the recycler view
-                // so the screen doesn't get too crowded
-                if (tweet != null) {
-                    if (currentKeyWord.equals(tweet.getKeyWord())) {
-                        tweets.add(tweet);
-                        viewAdapter.notifyItemInserted(tweets.size() - 1);
-                    } else {
-                        // The keyword has changed so we reset
-                        // the array list and the adapter
-                        currentKeyWord = tweet.getKeyWord();
-                        tweets = new ArrayList<>();
-                        viewAdapter.reset(tweets);
-                        tweets.add(tweet);
-                        viewAdapter.notifyItemInserted(tweets.size() - 1);
-                    }
-                }
-                // If the recycler view is at the bottom, we'll want to make sure it automatically
-                // scrolls to the bottom when a new tweet comes in. This way the user doesn't
-                // have to keep scrolling to the bottom themselves
-                if (isRecyclerViewAtBottom) recyclerView.smoothScrollToPosition(tweets.size());
-                emptyView.setVisibility(View.GONE);
-            }
+    private void onStreamBatch(StreamBatchEvent event) {
+        if (event.getTweets().isEmpty() && event.getRetweets().isEmpty()) return;
+        // If the keywords have changed, we need to reset the recycler view
+        // so the screen doesn't get too crowded
+        if (!event.hasKeyWords(currentKeyWords)) {
+            // The keywords have changed so we reset
+            // the array list and the adapter
+            currentKeyWords = event.getKeyWords();
+            tweets = new ArrayList<>();
+            viewAdapter.reset(tweets);
         }
-    };
+        viewAdapter.addTweets(event.getTweets());
+        // Retweets of tweets already in the list only update their counter
+        viewAdapter.updateRetweets(event.getRetweets());
+        // If the recycler view is at the bottom, we'll want to make sure it automatically
+        // scrolls to the bottom when a new tweet comes in. This way the user doesn't
+        // have to keep scrolling to the bottom themselves
+        if (isRecyclerViewAtBottom) recyclerView.smoothScrollToPosition(tweets.size());
+        emptyView.setVisibility(View.GONE);
+        // Measures from when the batch was sent until the frame that draws it starts
+        long postedNanos = event.getPostedNanos();
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> renderLatency.recordSince(postedNanos));
+    }
 
     private RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
         @Override
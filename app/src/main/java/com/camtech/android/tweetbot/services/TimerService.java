@@ -10,6 +10,8 @@ import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.camtech.android.tweetbot.core.StreamListener;
+import com.camtech.android.tweetbot.events.EventBus;
+import com.camtech.android.tweetbot.events.TimerEvent;
 
 /**
  * Since every call to start the {@link StreamListener} authenticates
@@ -23,8 +25,6 @@ public class TimerService extends Service {
 
     private final String TAG = TimerService.class.getSimpleName();
 
-    public static final String BROADCAST_TIME = "Timer";
-    public static final String INTENT_TIME_LEFT = "timeLeft";
     public static final String INTENT_EXTRA_TIME = "Time";
     private CountDownTimer timer;
     private SharedPreferences timerPref;
@@ -46,9 +46,6 @@ public class TimerService extends Service {
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        // Ths intent broadcast to receiving containing the
-        // amount of time the timer has left
-        Intent timeIntent = new Intent(BROADCAST_TIME);
         // There might've been an intent passed to this service to
         // use a time other than 30 seconds
         long runtime = intent != null ? intent.getLongExtra(INTENT_EXTRA_TIME, DEFAULT_RUNTIME) : DEFAULT_RUNTIME;
@@ -57,15 +54,14 @@ public class TimerService extends Service {
             @Override
             public void onTick(long millisUntilFinished) {
                 Log.i(TAG, "onTick: Time left: " + millisUntilFinished / 1000);
-                timeIntent.putExtra(INTENT_TIME_LEFT, millisUntilFinished / 1000);
-                sendBroadcast(timeIntent);
+                // Let subscribers know how much time the timer has left
+                EventBus.getDefault().post(new TimerEvent(millisUntilFinished / 1000));
                 timerPref.edit().putLong(PREF_TIME_REMAINING, millisUntilFinished).apply();
             }
 
             @Override
             public void onFinish() {
-                timeIntent.putExtra(INTENT_TIME_LEFT, 0L);
-                sendBroadcast(timeIntent);
+                EventBus.getDefault().post(new TimerEvent(0L));
                 stopSelf();
                 timerPref.edit().putLong(PREF_TIME_REMAINING, 0L).apply();
             }
@@ -1,6 +1,5 @@
 package com.camtech.android.tweetbot.services;
 
-import android.annotation.SuppressLint;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
@@ -8,22 +7,49 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.media.AudioManager;
 import android.net.ConnectivityManager;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.IBinder;
 import android.support.annotation.Nullable;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.util.Pair;
+import android.support.v7.preference.PreferenceManager;
+import android.text.TextUtils;
 
 import com.camtech.android.tweetbot.R;
 import com.camtech.android.tweetbot.activities.MainActivity;
+import com.camtech.android.tweetbot.core.AuthorSketches;
+import com.camtech.android.tweetbot.core.CounterStore;
+import com.camtech.android.tweetbot.core.FilterableSource;
+import com.camtech.android.tweetbot.core.HeavyHitters;
+import com.camtech.android.tweetbot.core.HyperLogLog;
+import com.camtech.android.tweetbot.core.Metrics;
+import com.camtech.android.tweetbot.core.OccurrenceSeries;
+import com.camtech.android.tweetbot.core.ReconnectSupervisor;
+import com.camtech.android.tweetbot.core.ReplaySource;
+import com.camtech.android.tweetbot.core.SpikeDetector;
+import com.camtech.android.tweetbot.core.StatusSource;
 import com.camtech.android.tweetbot.core.StreamListener;
+import com.camtech.android.tweetbot.core.StreamProcessor;
+import com.camtech.android.tweetbot.core.SyntheticSource;
+import com.camtech.android.tweetbot.core.TwitterStreamSource;
+import com.camtech.android.tweetbot.events.EventBus;
+import com.camtech.android.tweetbot.events.ServiceStateEvent;
+import com.camtech.android.tweetbot.events.StallWarningEvent;
+import com.camtech.android.tweetbot.events.StreamBatchEvent;
 import com.camtech.android.tweetbot.utils.DbUtils;
 import com.camtech.android.tweetbot.utils.ServiceUtils;
 import com.camtech.android.tweetbot.utils.TwitterUtils;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import twitter4j.ConnectionLifeCycleListener;
 import twitter4j.FilterQuery;
 import twitter4j.TwitterStream;
@@ -32,18 +58,75 @@ import twitter4j.TwitterStreamFactory;
 /**
  * Service to start the stream. The connection is kept
  * alive while the service is running.
+ * <p>
+ * The counts live in the default {@link CounterStore} while the service is
+ * running. It saves them to the database every minute, so if Android kills
+ * the service in the background, at most a minute of counting is lost.
+ * An {@link OccurrenceSeries} also records the counts of every minute so
+ * they can be graphed over time, and a {@link SpikeDetector} posts a
+ * notification when a keyword starts occurring a lot more than usual.
  */
-public class TwitterService extends Service {
+public class TwitterService extends Service implements ReconnectSupervisor.Listener {
     public static final String TAG = TwitterService.class.getSimpleName();
-    private TwitterStream twitterStream;
+    private StatusSource statusSource;
+    private ReconnectSupervisor reconnectSupervisor;
+    private StreamListener streamListener;
+    private OccurrenceSeries occurrenceSeries;
+    private SpikeDetector spikeDetector;
+    // SharedPreferences only keeps a weak reference to its listeners so we have to hold onto this one
+    private final SharedPreferences.OnSharedPreferenceChangeListener spikePrefListener = (prefs, key) -> {
+        if (key.equals(getString(R.string.pref_spike_threshold_key))
+                || key.equals(getString(R.string.pref_spike_ratio_key))) {
+            loadSpikeSettings(prefs);
+        }
+    };
+    // Also read by the supervisor's thread when it creates a new stream
+    private volatile String[] keyWords;
     private String keyWord;
     private NotificationManager notificationManager;
     private NotificationCompat.Builder builder;
     private ConnectivityReceiver connectivityReceiver;
-    private int occurrences;
+    private EventBus.Subscription<StreamBatchEvent> batchSubscription;
+    private EventBus.Subscription<StallWarningEvent> stallWarningSubscription;
+    // Set while the notification says the stream is falling behind
+    private volatile boolean showingStallWarning;
 
-    public static final String BROADCAST_UPDATE = "updateServiceStatus";
+    /**
+     * Optional String array extra used to track more than one keyword
+     * over the same connection. If it isn't set, {@link Intent#EXTRA_TEXT}
+     * is used as the only keyword.
+     */
+    public static final String EXTRA_KEYWORDS = "keyWords";
+    /**
+     * Optional path to a recorded stream to play back instead of connecting
+     * to Twitter, see {@link ReplaySource}. i.e.
+     * <pre>
+     * adb shell am startservice -n com.camtech.android.tweetbot/.services.TwitterService \
+     *     --es android.intent.extra.TEXT android --es replayFile /sdcard/stream.json.gz --ef replaySpeed 10
+     * </pre>
+     */
+    public static final String EXTRA_REPLAY_FILE = "replayFile";
+    /**
+     * How many times faster than real time the recorded stream is played back.
+     * Defaults to real time, 0 plays it back as fast as possible.
+     */
+    public static final String EXTRA_REPLAY_SPEED = "replaySpeed";
+    /**
+     * Optional number of made up statuses to send each second instead of
+     * connecting to Twitter, see {@link SyntheticSource}. 0 sends them as fast
+     * as the app can take them.
+     */
+    public static final String EXTRA_SYNTHETIC_RATE = "syntheticRate";
+    /**
+     * Changes the keywords of the running stream to the ones in {@link #EXTRA_KEYWORDS}
+     * or {@link Intent#EXTRA_TEXT} without stopping the service. Changes made in quick
+     * succession are combined into one. If the service isn't running yet, it's started
+     * with the new keywords. Starting the service again while it's running does the same
+     * thing, the stream it's already running is kept.
+     */
+    public static final String ACTION_CHANGE_KEYWORDS = "com.camtech.android.tweetbot.action.CHANGE_KEYWORDS";
     public static final int ID_STREAM_CONNECTED = 0;
+    public static final int ID_SPIKE = 3;
     public static final int ID_OPEN_MAIN_ACTIVITY = 100;
 
     @Nullable
@@ -58,33 +141,62 @@ public class TwitterService extends Service {
         // Receiver to listen for network changes
         connectivityReceiver = new ConnectivityReceiver();
         registerReceiver(connectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
-        // Receiver to listen for when the notification is clicked
-        registerReceiver(numOccurrencesReceiver, new IntentFilter(StreamListener.OCCURRENCES_INTENT_FILTER));
+        batchSubscription = EventBus.getDefault().subscribe(
+                StreamBatchEvent.class,
+                EventBus.ThreadMode.BACKGROUND,
+                event -> {
+                    // Tweets are shown again once the stream has caught up
+                    if (showingStallWarning && !streamListener.isLightMode()) {
+                        showingStallWarning = false;
+                        updateNotificationText(getString(R.string.notification_stream_occurrences, keyWord));
+                    }
+                });
+        stallWarningSubscription = EventBus.getDefault().subscribe(
+                StallWarningEvent.class,
+                EventBus.ThreadMode.MAIN,
+                event -> {
+                    showingStallWarning = true;
+                    updateNotificationText(getString(R.string.notification_falling_behind, event.getPercentFull()));
+                });
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        // This broadcast is sent to update the button text on the OccurrencesFragment
-        sendBroadcast(new Intent(BROADCAST_UPDATE));
-        keyWord = intent.getStringExtra(Intent.EXTRA_TEXT);
-
-        Intent autoSaveIntent = new Intent(this, AutoSaveService.class);
-        autoSaveIntent.putExtra(TAG, keyWord);
-        startService(autoSaveIntent);
-
-        // Set a filter for the keyword to track its occurrences
-        FilterQuery query = new FilterQuery(keyWord);
-        // Used to listen for a specific word or phrase
-        StreamListener streamListener = new StreamListener(this, keyWord);
-//        TwitterStreamFactory twitterStreamFactory = new TwitterStreamFactory();
-//        twitterStream = twitterStreamFactory.getInstance();
-//        twitterStream.setOAuthConsumer(Keys.CONSUMER_KEY, Keys.CONSUMER_KEY_SECRET);
-//        twitterStream.setOAuthAccessToken(TwitterUtils.getAccessToken(this));
-        twitterStream = new TwitterStreamFactory(TwitterUtils.getConfig(this)).getInstance();
-
+        if (statusSource != null) {
+            // Already running, starting everything again would leave the running stream behind
+            changeKeyWords(getKeyWords(intent));
+            return START_NOT_STICKY;
+        }
+        // This event is sent to update the button text on the OccurrencesFragment
+        EventBus.getDefault().post(new ServiceStateEvent(true));
+        keyWords = getKeyWords(intent);
+        keyWord = TextUtils.join(", ", keyWords);
 
-        twitterStream.addListener(streamListener);
-        twitterStream.filter(query);
+        // Started before the listener loads the saved counts into the store
+        CounterStore.getDefault().startCheckpoints(this::saveCounts, CounterStore.DEFAULT_CHECKPOINT_MILLIS);
+        // Used to listen for specific words or phrases
+        streamListener = new StreamListener(this, keyWords);
+        occurrenceSeries = new OccurrenceSeries(CounterStore.getDefault(), this::saveSeries);
+        occurrenceSeries.start();
+        spikeDetector = new SpikeDetector(CounterStore.getDefault(), this::showSpike);
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        loadSpikeSettings(prefs);
+        prefs.registerOnSharedPreferenceChangeListener(spikePrefListener);
+        spikeDetector.start();
+        String replayFile = intent.getStringExtra(EXTRA_REPLAY_FILE);
+        if (replayFile != null) {
+            float speed = intent.getFloatExtra(EXTRA_REPLAY_SPEED, 1f);
+            statusSource = new ReplaySource(new File(replayFile), speed, streamListener.getRawListener());
+        } else if (intent.hasExtra(EXTRA_SYNTHETIC_RATE)) {
+            statusSource = new SyntheticSource.Builder(keyWords)
+                    .rate(intent.getIntExtra(EXTRA_SYNTHETIC_RATE, 0))
+                    .build(streamListener.getRawListener());
+        } else {
+            // The supervisor reconnects with a new stream whenever the connection fails
+            reconnectSupervisor = new ReconnectSupervisor(this::createTwitterStreamSource, this);
+            streamListener.setSupervisor(reconnectSupervisor);
+            statusSource = reconnectSupervisor;
+        }
 
         // Construct the notification to show all text when swiped down
         builder = new NotificationCompat.Builder(this, "TwitterService");
@@ -123,15 +235,65 @@ public class TwitterService extends Service {
 
         notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
         notificationManager.notify(ID_STREAM_CONNECTED, builder.build());
+        statusSource.start();
+        return START_NOT_STICKY;
+    }
+
+    private static String[] getKeyWords(Intent intent) {
+        String[] keyWords = intent.getStringArrayExtra(EXTRA_KEYWORDS);
+        return keyWords != null ? keyWords : new String[]{intent.getStringExtra(Intent.EXTRA_TEXT)};
+    }
+
+    /**
+     * Switches the running stream over to new keywords
+     */
+    private void changeKeyWords(String[] newKeyWords) {
+        if (reconnectSupervisor != null) {
+            // The supervisor waits for any more changes and makes sure the
+            // connection budget allows it, then calls onRefilter
+            reconnectSupervisor.refilter(newKeyWords);
+        } else {
+            onRefilter(newKeyWords);
+            if (statusSource instanceof FilterableSource) {
+                ((FilterableSource) statusSource).refilter(newKeyWords);
+            }
+        }
+    }
+
+    /**
+     * Connects to Twitter and filters the stream by the keywords
+     */
+    private StatusSource createTwitterStreamSource() {
+        // Set a filter for the keywords to track their occurrences.
+        // Every keyword shares the same connection.
+        FilterQuery query = new FilterQuery(keyWords);
+//        TwitterStreamFactory twitterStreamFactory = new TwitterStreamFactory();
+//        twitterStream = twitterStreamFactory.getInstance();
+//        twitterStream.setOAuthConsumer(Keys.CONSUMER_KEY, Keys.CONSUMER_KEY_SECRET);
+//        twitterStream.setOAuthAccessToken(TwitterUtils.getAccessToken(this));
+        TwitterStream twitterStream = new TwitterStreamFactory(TwitterUtils.getConfig(this)).getInstance();
+
+        // The raw listener skips building a full Status for every message.
+        // This only takes effect the next time the stream is started.
+        boolean useRawJson = PreferenceManager.getDefaultSharedPreferences(this).getBoolean(
+                getString(R.string.pref_raw_json_key),
+                getResources().getBoolean(R.bool.pref_raw_json_streaming));
+        if (useRawJson) {
+            twitterStream.addListener(streamListener.getRawListener());
+        } else {
+            twitterStream.addListener(streamListener);
+        }
         twitterStream.addConnectionLifeCycleListener(new ConnectionLifeCycleListener() {
             @Override
             public void onConnect() {
+                reconnectSupervisor.onConnected();
+                updateNotificationText(getString(R.string.notification_stream_occurrences, keyWord));
             }
 
             @Override
             public void onDisconnect() {
-                // This makes sure the notification is cancelled if/when the stream is closed
-                notificationManager.cancel(ID_STREAM_CONNECTED);
+                // The supervisor reconnects after a disconnect so the notification
+                // is only cancelled once the service is destroyed
             }
 
             @Override
@@ -139,8 +301,114 @@ public class TwitterService extends Service {
 
             }
         });
+        return new TwitterStreamSource(twitterStream, query);
+    }
 
-        return START_NOT_STICKY;
+    @Override
+    public void onReconnecting(ReconnectSupervisor.Failure failure, long delayMillis, int attempt) {
+        int seconds = (int) Math.ceil(delayMillis / 1000.0);
+        updateNotificationText(getString(failure == ReconnectSupervisor.Failure.RATE_LIMITED
+                ? R.string.notification_rate_limited
+                : R.string.notification_reconnecting, seconds));
+    }
+
+    @Override
+    public void onGaveUp(ReconnectSupervisor.Failure failure, Exception error) {
+        streamListener.showError(failure);
+    }
+
+    @Override
+    public void onRefilter(String[] newKeyWords) {
+        // Streams created from now on use the new keywords
+        keyWords = newKeyWords;
+        keyWord = TextUtils.join(", ", newKeyWords);
+        // Keywords that are dropped are taken out of the counter store
+        // so the minute so far has to be recorded first
+        occurrenceSeries.sample(System.currentTimeMillis());
+        streamListener.setKeyWords(newKeyWords);
+        updateNotificationText(getString(R.string.notification_stream_occurrences, keyWord));
+    }
+
+    private void saveCounts(Map<String, Long> counts) {
+        // A keyword only gets new authors when its count goes up, so the
+        // sketch is saved along with every count that changed
+        Map<String, byte[]> authors = new HashMap<>();
+        for (String keyWord : counts.keySet()) {
+            HyperLogLog sketch = AuthorSketches.getDefault().get(keyWord);
+            if (sketch != null) authors.put(keyWord, sketch.toBytes());
+        }
+        DbUtils.saveKeyWords(getBaseContext(), counts, authors);
+    }
+
+    private void saveSeries(List<OccurrenceSeries.Bucket> buckets) {
+        DbUtils.saveSeries(getBaseContext(), buckets);
+        // The hours and days already have the occurrences of the minutes being deleted
+        DbUtils.deleteExpiredSeries(getBaseContext(), System.currentTimeMillis());
+    }
+
+    private void loadSpikeSettings(SharedPreferences prefs) {
+        spikeDetector.setThreshold(Double.parseDouble(prefs.getString(
+                getString(R.string.pref_spike_threshold_key), getString(R.string.pref_spike_threshold_default))));
+        spikeDetector.setRatio(Double.parseDouble(prefs.getString(
+                getString(R.string.pref_spike_ratio_key), getString(R.string.pref_spike_ratio_default))));
+    }
+
+    /**
+     * Lets the user know a keyword is spiking. Each keyword gets its own
+     * notification so a spike doesn't hide another keyword's.
+     */
+    private void showSpike(String spikingKeyWord, double perMinute, double usualPerMinute) {
+        NotificationCompat.Builder spikeBuilder = new NotificationCompat.Builder(this, "Spike");
+        String text = getString(R.string.notification_spike, perMinute, usualPerMinute);
+        spikeBuilder.setSmallIcon(R.drawable.ic_stat_message);
+        spikeBuilder.setContentTitle(getString(R.string.notification_spike_title, spikingKeyWord));
+        spikeBuilder.setContentText(text);
+        spikeBuilder.setStyle(new NotificationCompat.BigTextStyle().bigText(text));
+        spikeBuilder.setColor(getResources().getColor(R.color.colorOccurrences));
+        spikeBuilder.setAutoCancel(true);
+        spikeBuilder.setContentIntent(PendingIntent.getActivity(
+                this,
+                ID_OPEN_MAIN_ACTIVITY,
+                new Intent(this, MainActivity.class),
+                PendingIntent.FLAG_UPDATE_CURRENT));
+        notificationManager.notify(spikingKeyWord, ID_SPIKE, spikeBuilder.build());
+    }
+
+    private void updateNotificationText(String text) {
+        builder.setContentText(text);
+        builder.setStyle(new NotificationCompat
+                .BigTextStyle()
+                .setSummaryText(keyWord)
+                .bigText(text)
+                .setBigContentTitle(getString(R.string.notification_title)));
+        notificationManager.notify(ID_STREAM_CONNECTED, builder.build());
+    }
+
+    /**
+     * Lets the metrics be pulled for a bug report while the stream is running:
+     * <pre>
+     * adb shell dumpsys activity service com.camtech.android.tweetbot/.services.TwitterService
+     * </pre>
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("Keywords: " + keyWord);
+        writer.println("Source: " + (statusSource != null ? statusSource.getClass().getSimpleName() : "none"));
+        writer.println("Counts: " + CounterStore.getDefault().snapshot());
+        for (String keyWord : CounterStore.getDefault().snapshot().keySet()) {
+            writer.println("Unique authors of " + keyWord + ": ~" + AuthorSketches.getDefault().estimate(keyWord));
+        }
+        if (streamListener != null) {
+            writer.println("Trending:");
+            for (HeavyHitters.Item item : streamListener.getTrendingTerms(StreamProcessor.NUM_TRENDING_TERMS)) {
+                writer.println("  " + item.getTerm() + ": " + item.getCount() + " (+/- " + item.getError() + ")");
+            }
+        }
+        writer.println("Most saved:");
+        for (Pair<String, Long> pair : DbUtils.getKeyWords(this, DbUtils.OCCURRENCES_DESC, 10)) {
+            writer.println("  " + pair.first + ": " + pair.second);
+        }
+        Metrics.getDefault().dump(writer);
     }
 
     @Override
@@ -148,47 +416,35 @@ public class TwitterService extends Service {
         super.onDestroy();
         cleanUpAndSave();
         notificationManager.cancel(ID_STREAM_CONNECTED);
-        sendBroadcast(new Intent(BROADCAST_UPDATE));
+        EventBus.getDefault().post(new ServiceStateEvent(false));
         unregisterReceiver(connectivityReceiver);
-        unregisterReceiver(numOccurrencesReceiver);
-        stopService(new Intent(this, AutoSaveService.class));
+        PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(spikePrefListener);
+        batchSubscription.unsubscribe();
+        stallWarningSubscription.unsubscribe();
     }
 
-
-    @SuppressLint("StaticFieldLeak")
+    /**
+     * Stops the stream and saves the final counts. This is done before onDestroy
+     * returns, since the counter store and the author sketches are shared with the
+     * next time the service starts, so they have to be done with this one by then.
+     * Closing the connection can take a while but the source does that on its own thread.
+     */
     private void cleanUpAndSave() {
-        // Sometimes stopping the stream freezes the UI so we need
-        // to stop it using an AsyncTask. We can also use this to
-        // save data to the database
-        new AsyncTask<Void, Void, Void>() {
-            @Override
-            protected Void doInBackground(Void... voids) {
-                twitterStream.shutdown();
-                // We need to check if the number in the database is greater than the
-                // value we have now so that the number doesn't get overridden with a
-                // smaller number
-                Pair<String, Integer> pair = DbUtils.getKeyWord(getBaseContext(), keyWord);
-                if (pair != null && pair.second != null && occurrences > pair.second) {
-                    DbUtils.saveKeyWord(getBaseContext(), keyWord, occurrences);
-                }
-                return null;
-            }
-
-            @Override
-            protected void onPostExecute(Void aVoid) {
-                super.onPostExecute(aVoid);
-                twitterStream = null;
-            }
-        }.execute();
+        statusSource.shutdown();
+        // Waits for the workers so nothing is counted after this
+        streamListener.shutdown();
+        String[] sessionKeyWords = streamListener.getKeyWords();
+        // The last checkpoint has the final counts.
+        // The series has to read them before they're taken out of the store.
+        occurrenceSeries.stop();
+        spikeDetector.stop();
+        CounterStore.getDefault().stopCheckpoints();
+        // The checkpoint saved them along with the counts. Keywords that were changed
+        // while the stream was running have already been taken out by the listener.
+        for (String keyWord : sessionKeyWords) AuthorSketches.getDefault().remove(keyWord);
+        statusSource = null;
     }
 
-    private BroadcastReceiver numOccurrencesReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            occurrences = intent.getIntExtra(StreamListener.NUM_OCCURRENCES_EXTRA, 0);
-        }
-    };
-
     /**
      * Receiver to listen for changes in network connection.
      * Since this isn't registered in the Manifest, this receiver
@@ -1,77 +1,139 @@
 package com.camtech.android.tweetbot.utils;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.v4.util.Pair;
 import android.util.Log;
 
+import com.camtech.android.tweetbot.core.HyperLogLog;
+import com.camtech.android.tweetbot.core.Metrics;
+import com.camtech.android.tweetbot.core.OccurrenceSeries;
 import com.camtech.android.tweetbot.data.HistoryContract;
+import com.camtech.android.tweetbot.data.HistoryContract.HistoryEntry;
+import com.camtech.android.tweetbot.data.HistoryContract.SeriesEntry;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static com.camtech.android.tweetbot.data.HistoryContract.HistoryEntry.COLUMN_AUTHORS;
 import static com.camtech.android.tweetbot.data.HistoryContract.HistoryEntry.COLUMN_KEYWORD;
+import static com.camtech.android.tweetbot.data.HistoryContract.HistoryEntry.COLUMN_LAST_USED;
 import static com.camtech.android.tweetbot.data.HistoryContract.HistoryEntry.COLUMN_OCCURRENCES;
 import static com.camtech.android.tweetbot.data.HistoryContract.HistoryEntry.CONTENT_URI;
 
 public class DbUtils {
 
     private static final String TAG = DbUtils.class.getSimpleName();
+    private static final Metrics.Histogram writeLatency = Metrics.getDefault().histogram("db.write");
+    // Writes to the history go through this so the cache doesn't pick up the changes it already has
+    private static final Uri CACHED_URI = CONTENT_URI.buildUpon()
+            .appendQueryParameter(HistoryContract.QUERY_PARAMETER_CACHED, "true")
+            .build();
     // Various sort orders
     public static final String DEFAULT_SORT = null;
     public static final String KEYWORD_ASC = COLUMN_KEYWORD + " ASC";
     public static final String KEYWORD_DESC = COLUMN_KEYWORD + " DESC";
     public static final String OCCURRENCES_ASC = COLUMN_OCCURRENCES + " ASC";
     public static final String OCCURRENCES_DESC = COLUMN_OCCURRENCES + " DESC";
+    public static final String LAST_USED_DESC = COLUMN_LAST_USED + " DESC";
 
     /**
      * Returns a single {@link Pair} containing the key word along with
      * its number of occurrences
      */
-    public static Pair<String, Integer> getKeyWord(Context context, String keyWord) {
-        if (isDbEmpty(context)) return null;
+    public static Pair<String, Long> getKeyWord(Context context, String keyWord) {
+        Long numOccurrences = KeywordCache.get(context).getCount(keyWord);
+        return numOccurrences != null ? Pair.create(keyWord, numOccurrences) : null;
+    }
+
+    /**
+     * Gets the keyword used most recently, along with its number of occurrences, from the database
+     *
+     * @return a {@link Pair} containing the keyword and its number of occurrences
+     */
+    public static Pair<String, Long> getMostRecentWord(Context context) {
+        return KeywordCache.get(context).getMostRecent();
+    }
+
+    /**
+     * Returns a {@link List} of {@link Pair} objects containing every key word
+     * and its number of occurrences in the database. Passing {@code null} for the
+     * sort order returns them in the order they were last used. If not null, one of
+     * {@link #KEYWORD_ASC}, {@link #KEYWORD_DESC}, {@link #OCCURRENCES_ASC}, or {@link #OCCURRENCES_DESC}
+     * should be used
+     */
+    public static List<Pair<String, Long>> getAllKeyWords(Context context, String sortOrder) {
+        List<Pair<String, Long>> pairs = KeywordCache.get(context).getAll();
+        if (pairs.isEmpty()) return null;
+        Comparator<Pair<String, Long>> comparator = comparatorFor(sortOrder);
+        if (comparator != null) Collections.sort(pairs, comparator);
+        return pairs;
+    }
+
+    /**
+     * Returns at most {@code limit} keywords, along with their number of occurrences,
+     * in the given sort order. One of {@link #KEYWORD_ASC}, {@link #KEYWORD_DESC},
+     * {@link #OCCURRENCES_ASC}, {@link #OCCURRENCES_DESC} or {@link #LAST_USED_DESC}
+     * should be used. Every one of them has an index, so only the rows returned are read.
+     */
+    public static List<Pair<String, Long>> getKeyWords(Context context, String sortOrder, int limit) {
+        List<Pair<String, Long>> pairs = new ArrayList<>();
         Cursor cursor = null;
         try {
-            // We only care about grabbing the keyword
-            // and the number of occurrences
-            String[] projection = {COLUMN_KEYWORD, COLUMN_OCCURRENCES};
-            String[] selectionArgs = new String[]{keyWord};
-            cursor = context.getContentResolver().query(CONTENT_URI, projection, COLUMN_KEYWORD + "=?", selectionArgs, null);
-            // Loop through the db to see if the word we're searching
-            // for exists in the database
-            if (cursor != null && cursor.moveToFirst()) {
-                String keyWordInDb = cursor.getString(cursor.getColumnIndex(COLUMN_KEYWORD));
-                int numOccurrences = cursor.getInt(cursor.getColumnIndex(COLUMN_OCCURRENCES));
-
-                return Pair.create(keyWordInDb, numOccurrences);
+            Uri uri = CONTENT_URI.buildUpon()
+                    .appendQueryParameter(HistoryContract.QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+            cursor = context.getContentResolver().query(
+                    uri, new String[]{COLUMN_KEYWORD, COLUMN_OCCURRENCES}, null, null, sortOrder);
+            if (cursor != null) {
+                while (cursor.moveToNext()) pairs.add(Pair.create(cursor.getString(0), cursor.getLong(1)));
             }
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
             if (cursor != null) cursor.close();
         }
-        return null;
+        return pairs;
     }
 
     /**
-     * Gets the very last keyword, along with its number of occurrences, from the database
-     *
-     * @return a {@link Pair} containing the keyword and its number of occurrences
+     * The cache already holds every keyword so sorting them here saves a query
      */
-    public static Pair<String, Integer> getMostRecentWord(Context context) {
-        if (isDbEmpty(context)) return null;
+    private static Comparator<Pair<String, Long>> comparatorFor(String sortOrder) {
+        if (sortOrder == null) return null;
+        switch (sortOrder) {
+            case KEYWORD_ASC:
+                return (a, b) -> a.first.compareTo(b.first);
+            case KEYWORD_DESC:
+                return (a, b) -> b.first.compareTo(a.first);
+            case OCCURRENCES_ASC:
+                return (a, b) -> a.second.compareTo(b.second);
+            case OCCURRENCES_DESC:
+                return (a, b) -> b.second.compareTo(a.second);
+            default:
+                throw new IllegalArgumentException("Unknown sort order " + sortOrder);
+        }
+    }
+
+    /**
+     * Returns the saved sketch of the users who posted a keyword's
+     * occurrences, or null if it doesn't have one
+     */
+    public static byte[] getAuthors(Context context, String keyWord) {
         Cursor cursor = null;
         try {
-            cursor = context.getContentResolver().query(CONTENT_URI, null, null, null, null);
-            if (cursor != null) {
-                if (cursor.moveToLast()) {
-                    String keyWord = cursor.getString(cursor.getColumnIndex(COLUMN_KEYWORD));
-                    int numOccurrences = cursor.getInt(cursor.getColumnIndex(COLUMN_OCCURRENCES));
-                    return Pair.create(keyWord, numOccurrences);
-                }
-            }
+            cursor = context.getContentResolver().query(
+                    CONTENT_URI, new String[]{COLUMN_AUTHORS}, COLUMN_KEYWORD + "=?", new String[]{keyWord}, null);
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) return cursor.getBlob(0);
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
@@ -81,37 +143,28 @@ public class DbUtils {
     }
 
     /**
-     * Returns a {@link List} of {@link Pair} objects containing every key word
-     * and its number of occurrences in the database. Passing {@code null} for the
-     * sort order defaults to the SQL default sort order. If not null, one of
-     * {@link #KEYWORD_ASC}, {@link #KEYWORD_DESC}, {@link #OCCURRENCES_ASC}, or {@link #OCCURRENCES_DESC}
-     * should be used
+     * Returns roughly how many different users posted the occurrences of
+     * each keyword. Keywords saved without a sketch are left out.
      */
-    public static List<Pair<String, Integer>> getAllKeyWords(Context context, String sortOrder) {
-        if (isDbEmpty(context)) return null;
+    public static Map<String, Long> getUniqueAuthors(Context context) {
+        Map<String, Long> uniqueAuthors = new HashMap<>();
         Cursor cursor = null;
-        List<Pair<String, Integer>> pairs = new ArrayList<>();
         try {
-            cursor = context.getContentResolver().query(CONTENT_URI, null, null, null, sortOrder);
+            cursor = context.getContentResolver().query(
+                    CONTENT_URI, new String[]{COLUMN_KEYWORD, COLUMN_AUTHORS}, COLUMN_AUTHORS + " IS NOT NULL", null, null);
             if (cursor != null) {
-                if (cursor.moveToFirst()) {
-                    while (!cursor.isAfterLast()) {
-                        String keyWord = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_KEYWORD));
-                        int numOccurrences = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_OCCURRENCES));
-                        pairs.add(Pair.create(keyWord, numOccurrences));
-                        cursor.moveToNext();
-                    }
+                while (cursor.moveToNext()) {
+                    byte[] sketch = cursor.getBlob(1);
+                    if (sketch.length != HyperLogLog.SIZE_IN_BYTES) continue;
+                    uniqueAuthors.put(cursor.getString(0), HyperLogLog.fromBytes(sketch).estimate());
                 }
-                return pairs;
             }
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
+            if (cursor != null) cursor.close();
         }
-        return null;
+        return uniqueAuthors;
     }
 
     /**
@@ -120,8 +173,15 @@ public class DbUtils {
     public static void deleteKeyWord(Context context, String keyWord) {
         try {
             String[] selectionArgs = new String[]{keyWord};
-            int rowsDeleted = context.getContentResolver().delete(CONTENT_URI, COLUMN_KEYWORD + " =?", selectionArgs);
-            Log.i(TAG, rowsDeleted + " rows deleted");
+            // Its history and series are deleted together or not at all
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+            operations.add(ContentProviderOperation.newDelete(CACHED_URI)
+                    .withSelection(COLUMN_KEYWORD + " =?", selectionArgs).build());
+            operations.add(ContentProviderOperation.newDelete(SeriesEntry.CONTENT_URI)
+                    .withSelection(SeriesEntry.COLUMN_KEYWORD + " =?", selectionArgs).build());
+            ContentProviderResult[] results = context.getContentResolver().applyBatch(HistoryContract.CONTENT_AUTHORITY, operations);
+            KeywordCache.get(context).remove(keyWord);
+            Log.i(TAG, results[0].count + " rows deleted");
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -132,8 +192,12 @@ public class DbUtils {
      */
     public static void deleteAllKeyWords(Context context) {
         try {
-            int rowsDeleted = context.getContentResolver().delete(CONTENT_URI, null, null);
-            Log.i(TAG, rowsDeleted + " rows deleted");
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+            operations.add(ContentProviderOperation.newDelete(CACHED_URI).build());
+            operations.add(ContentProviderOperation.newDelete(SeriesEntry.CONTENT_URI).build());
+            ContentProviderResult[] results = context.getContentResolver().applyBatch(HistoryContract.CONTENT_AUTHORITY, operations);
+            KeywordCache.get(context).clear();
+            Log.i(TAG, results[0].count + " rows deleted");
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -142,30 +206,156 @@ public class DbUtils {
     /**
      * Adds a single keyword to the database
      */
-    public static void saveKeyWord(Context context, String keyword, int numOccurrences) {
-        ContentValues values = new ContentValues();
-        values.put(HistoryContract.HistoryEntry.COLUMN_KEYWORD, keyword);
-        values.put(HistoryContract.HistoryEntry.COLUMN_OCCURRENCES, numOccurrences);
-        Uri uri = context.getContentResolver().insert(HistoryContract.HistoryEntry.CONTENT_URI, values);
+    public static void saveKeyWord(Context context, String keyword, long numOccurrences) {
+        saveKeyWord(context, keyword, numOccurrences, null);
+    }
+
+    /**
+     * Adds a single keyword to the database along with the sketch of its
+     * authors from {@link HyperLogLog#toBytes()}, which replaces the saved one.
+     * A keyword that's already saved is updated in place.
+     */
+    public static void saveKeyWord(Context context, String keyword, long numOccurrences, byte[] authors) {
+        long start = System.nanoTime();
+        Uri uri = context.getContentResolver().insert(CACHED_URI, keyWordValues(keyword, numOccurrences, authors));
+        if (uri != null) KeywordCache.get(context).put(keyword, numOccurrences);
+        writeLatency.recordSince(start);
         Log.i(TAG, "URI: " + (uri != null ? uri.toString() : ":("));
     }
 
     /**
-     * Checks if the database is empty. This is used in the beginning of most
-     * methods to prevent long unnecessary searching.
+     * Saves the number of occurrences of every keyword, along with the sketch
+     * of its authors if it has one in {@code authors}, in one transaction.
+     * Unlike {@link #saveKeyWord(Context, String, long, byte[])} the keywords
+     * that are already saved aren't marked as used.
      */
-    private static boolean isDbEmpty(Context context) {
+    public static void saveKeyWords(Context context, Map<String, Long> counts, Map<String, byte[]> authors) {
+        long start = System.nanoTime();
+        ContentValues[] values = new ContentValues[counts.size()];
+        int i = 0;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            values[i++] = keyWordValues(entry.getKey(), entry.getValue(), authors.get(entry.getKey()));
+        }
+        context.getContentResolver().bulkInsert(CACHED_URI, values);
+        KeywordCache cache = KeywordCache.get(context);
+        for (Map.Entry<String, Long> entry : counts.entrySet()) cache.update(entry.getKey(), entry.getValue());
+        writeLatency.recordSince(start);
+    }
+
+    /**
+     * Adds to the number of occurrences of a keyword, saving it first if it isn't
+     * saved yet. This is done in one step by the database so nothing written
+     * to the keyword in the meantime is lost.
+     *
+     * @return The keyword's new number of occurrences or -1 if it couldn't be saved
+     */
+    public static long addOccurrences(Context context, String keyWord, long numOccurrences) {
+        try {
+            Bundle extras = new Bundle();
+            extras.putLong(HistoryEntry.EXTRA_OCCURRENCES, numOccurrences);
+            extras.putBoolean(HistoryContract.QUERY_PARAMETER_CACHED, true);
+            Bundle result = context.getContentResolver().call(CONTENT_URI, HistoryEntry.METHOD_ADD_OCCURRENCES, keyWord, extras);
+            if (result != null) {
+                long count = result.getLong(HistoryEntry.EXTRA_OCCURRENCES);
+                KeywordCache.get(context).put(keyWord, count);
+                return count;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    private static ContentValues keyWordValues(String keyWord, long numOccurrences, byte[] authors) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_KEYWORD, keyWord);
+        values.put(COLUMN_OCCURRENCES, numOccurrences);
+        if (authors != null) values.put(COLUMN_AUTHORS, authors);
+        return values;
+    }
+
+    /**
+     * Adds the occurrences in each bucket to the ones already saved, in one transaction
+     */
+    public static void saveSeries(Context context, List<OccurrenceSeries.Bucket> buckets) {
+        long start = System.nanoTime();
+        ContentValues[] values = new ContentValues[buckets.size()];
+        for (int i = 0; i < values.length; i++) {
+            OccurrenceSeries.Bucket bucket = buckets.get(i);
+            values[i] = new ContentValues();
+            values[i].put(SeriesEntry.COLUMN_KEYWORD, bucket.getKeyWord());
+            values[i].put(SeriesEntry.COLUMN_TIER, bucket.getTier().getId());
+            values[i].put(SeriesEntry.COLUMN_BUCKET_START, bucket.getStart());
+            values[i].put(SeriesEntry.COLUMN_OCCURRENCES, bucket.getCount());
+        }
+        context.getContentResolver().bulkInsert(SeriesEntry.CONTENT_URI, values);
+        writeLatency.recordSince(start);
+    }
+
+    /**
+     * Returns the buckets of a keyword that start between {@code from} and {@code to}, oldest first
+     */
+    public static List<OccurrenceSeries.Bucket> getSeries(
+            Context context, String keyWord, OccurrenceSeries.Tier tier, long from, long to) {
+        List<OccurrenceSeries.Bucket> buckets = new ArrayList<>();
         Cursor cursor = null;
         try {
-            cursor = context.getContentResolver().query(CONTENT_URI, new String[]{COLUMN_KEYWORD}, null, null, null);
-            return cursor != null && cursor.getCount() <= 0;
+            String[] projection = {SeriesEntry.COLUMN_BUCKET_START, SeriesEntry.COLUMN_OCCURRENCES};
+            String selection = SeriesEntry.COLUMN_KEYWORD + "=? AND " + SeriesEntry.COLUMN_TIER + "=? AND "
+                    + SeriesEntry.COLUMN_BUCKET_START + " BETWEEN ? AND ?";
+            String[] selectionArgs = {keyWord, String.valueOf(tier.getId()), String.valueOf(from), String.valueOf(to)};
+            cursor = context.getContentResolver().query(
+                    SeriesEntry.CONTENT_URI, projection, selection, selectionArgs, SeriesEntry.COLUMN_BUCKET_START + " ASC");
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    buckets.add(new OccurrenceSeries.Bucket(keyWord, tier, cursor.getLong(0), cursor.getLong(1)));
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (cursor != null) {
-                cursor.close();
+            if (cursor != null) cursor.close();
+        }
+        return buckets;
+    }
+
+    /**
+     * Returns when the first bucket of a keyword starts or -1 if it doesn't have any
+     */
+    public static long getSeriesStart(Context context, String keyWord) {
+        Cursor cursor = null;
+        try {
+            // Days are kept the longest so they always hold the first bucket
+            cursor = context.getContentResolver().query(
+                    SeriesEntry.CONTENT_URI,
+                    new String[]{"MIN(" + SeriesEntry.COLUMN_BUCKET_START + ")"},
+                    SeriesEntry.COLUMN_KEYWORD + "=? AND " + SeriesEntry.COLUMN_TIER + "=?",
+                    new String[]{keyWord, String.valueOf(OccurrenceSeries.Tier.DAY.getId())},
+                    null);
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) return cursor.getLong(0);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+        return -1;
+    }
+
+    /**
+     * Deletes the buckets each tier doesn't keep anymore. The coarser tiers
+     * already have their occurrences so nothing is lost but detail.
+     */
+    public static void deleteExpiredSeries(Context context, long now) {
+        try {
+            for (OccurrenceSeries.Tier tier : OccurrenceSeries.Tier.values()) {
+                if (tier.getRetentionMillis() == Long.MAX_VALUE) continue;
+                context.getContentResolver().delete(
+                        SeriesEntry.CONTENT_URI,
+                        SeriesEntry.COLUMN_TIER + "=? AND " + SeriesEntry.COLUMN_BUCKET_START + "<?",
+                        new String[]{String.valueOf(tier.getId()), String.valueOf(now - tier.getRetentionMillis())});
             }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
-        return false;
     }
 }
@@ -0,0 +1,205 @@
+package com.camtech.android.tweetbot.utils;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.util.Pair;
+
+import com.camtech.android.tweetbot.data.HistoryContract;
+import com.camtech.android.tweetbot.data.HistoryContract.HistoryEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every keyword in the history along with its number of occurrences, kept in
+ * memory so looking a keyword up doesn't need a query. The history is read
+ * once, the first time it's needed, and {@link DbUtils} updates the cache on
+ * every write it makes.
+ * <p>
+ * Anything else that changes the history is picked up by a {@link ContentObserver}.
+ * The writes from {@link DbUtils} are marked with
+ * {@link HistoryContract#QUERY_PARAMETER_CACHED} and skipped since they're already
+ * here. Saving a row notifies with the row's uri, so only that row is read again.
+ * Any other change throws the whole cache away and it's read again the next time
+ * it's needed.
+ * <p>
+ * The keywords are kept in the order they were last used, so the last one is
+ * the one used most recently.
+ */
+final class KeywordCache {
+
+    private static KeywordCache instance;
+
+    private final Context context;
+    // Null until the history has been read
+    private LinkedHashMap<String, Long> counts;
+    // Goes up on every change so a read that raced with one isn't kept
+    private long generation;
+
+    private KeywordCache(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    static synchronized KeywordCache get(Context context) {
+        if (instance == null) {
+            instance = new KeywordCache(context);
+            instance.context.getContentResolver().registerContentObserver(
+                    HistoryEntry.CONTENT_URI, true, instance.observer);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the number of occurrences of a keyword or null if it isn't in the history
+     */
+    Long getCount(String keyWord) {
+        return load().get(keyWord);
+    }
+
+    /**
+     * Returns the keyword used most recently or null if the history is empty
+     */
+    Pair<String, Long> getMostRecent() {
+        Map.Entry<String, Long> last = null;
+        for (Map.Entry<String, Long> entry : load().entrySet()) last = entry;
+        return last != null ? Pair.create(last.getKey(), last.getValue()) : null;
+    }
+
+    /**
+     * Returns every keyword in the order they were last used
+     */
+    List<Pair<String, Long>> getAll() {
+        Map<String, Long> counts = load();
+        List<Pair<String, Long>> pairs = new ArrayList<>(counts.size());
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            pairs.add(Pair.create(entry.getKey(), entry.getValue()));
+        }
+        return pairs;
+    }
+
+    /**
+     * Saving a keyword marks it as used, which moves it to the end
+     */
+    synchronized void put(String keyWord, long count) {
+        generation++;
+        if (counts == null) return;
+        counts.remove(keyWord);
+        counts.put(keyWord, count);
+    }
+
+    /**
+     * Changes the count of a keyword without marking it as used, so it stays
+     * where it is. New keywords still go at the end.
+     */
+    synchronized void update(String keyWord, long count) {
+        generation++;
+        if (counts != null) counts.put(keyWord, count);
+    }
+
+    synchronized void remove(String keyWord) {
+        generation++;
+        if (counts != null) counts.remove(keyWord);
+    }
+
+    synchronized void clear() {
+        generation++;
+        counts = new LinkedHashMap<>();
+    }
+
+    private synchronized void invalidate() {
+        generation++;
+        counts = null;
+    }
+
+    /**
+     * Returns a copy of the cache, reading the history first if it isn't loaded
+     */
+    private Map<String, Long> load() {
+        long readGeneration;
+        synchronized (this) {
+            if (counts != null) return new LinkedHashMap<>(counts);
+            readGeneration = generation;
+        }
+        // Don't hold the lock while querying
+        LinkedHashMap<String, Long> read = new LinkedHashMap<>();
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(
+                    HistoryEntry.CONTENT_URI,
+                    new String[]{HistoryEntry.COLUMN_KEYWORD, HistoryEntry.COLUMN_OCCURRENCES},
+                    null, null, HistoryEntry.COLUMN_LAST_USED + " ASC");
+            if (cursor != null) {
+                while (cursor.moveToNext()) read.put(cursor.getString(0), cursor.getLong(1));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return read;
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+        synchronized (this) {
+            // Something changed while reading so what was read might already be out of date
+            if (generation == readGeneration) counts = read;
+        }
+        return new LinkedHashMap<>(read);
+    }
+
+    /**
+     * Reads a single row that was just saved
+     */
+    private void reloadRow(long id) {
+        long readGeneration;
+        synchronized (this) {
+            if (counts == null) return;
+            readGeneration = generation;
+        }
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(
+                    ContentUris.withAppendedId(HistoryEntry.CONTENT_URI, id),
+                    new String[]{HistoryEntry.COLUMN_KEYWORD, HistoryEntry.COLUMN_OCCURRENCES},
+                    null, null, null);
+            // No row means it was deleted since, the notification for that is on its way
+            if (cursor == null || !cursor.moveToFirst()) return;
+            String keyWord = cursor.getString(0);
+            long count = cursor.getLong(1);
+            synchronized (this) {
+                if (generation == readGeneration) {
+                    put(keyWord, count);
+                } else {
+                    invalidate();
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            invalidate();
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+    }
+
+    // Called on a binder thread since it doesn't have a handler
+    private final ContentObserver observer = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            // DbUtils already applied it
+            if (uri != null && uri.getBooleanQueryParameter(HistoryContract.QUERY_PARAMETER_CACHED, false)) return;
+            // Only uris under the history reach here, so two segments means it's a single row
+            if (uri != null && uri.getPathSegments().size() == 2) {
+                reloadRow(ContentUris.parseId(uri));
+            } else {
+                invalidate();
+            }
+        }
+    };
+}
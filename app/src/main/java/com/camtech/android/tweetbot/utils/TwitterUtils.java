@@ -53,7 +53,9 @@ public class TwitterUtils {
                 .setOAuthConsumerKey(Keys.CONSUMER_KEY)
                 .setOAuthConsumerSecret(Keys.CONSUMER_KEY_SECRET)
                 .setOAuthAccessToken(token)
-                .setOAuthAccessTokenSecret(tokenSecret);
+                .setOAuthAccessTokenSecret(tokenSecret)
+                // Asks Twitter to warn us before it disconnects a stream that's read too slowly
+                .setStallWarningsEnabled(true);
         return cb.build();
     }
 
@@ -176,13 +178,4 @@ public class TwitterUtils {
     private static String createStatusUrlForWeb(String screenName, long statusId) {
         return String.format("https://twitter.com/%s/status/%s", screenName, String.valueOf(statusId));
     }
-
-    /**
-     * Gets rid of any URLs from a string. (Sometimes Twitter tweets/statuses have links)
-     * that are cut off making them un-clickable, or might lead to a sketchy/inappropriate website
-     * so it's best to just remove them)
-     */
-    public static String stripUrlFromText(String message) {
-        return message.replaceAll("http\\S+", "");
-    }
 }
@@ -0,0 +1,91 @@
+package com.camtech.android.tweetbot.benchmarks;
+
+import com.camtech.android.tweetbot.core.HeavyHitters;
+import com.camtech.android.tweetbot.core.RetweetAggregator;
+import com.camtech.android.tweetbot.core.StreamProcessor;
+import com.camtech.android.tweetbot.models.Tweet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+
+/**
+ * The cost of processing one status: parsing (on the raw path), matching,
+ * filtering, counting, finding the trending terms and batching. With the gc
+ * profiler this also shows the bytes allocated per status.
+ * <p>
+ * "status" hands StreamProcessor twitter4j Statuses, like StreamListener#onStatus
+ * does, so twitter4j's parsing isn't included. "raw" hands it the JSON the stream
+ * sent, like the raw listener does, and "raw+twitter4j" adds the cost of twitter4j
+ * parsing the same JSON for a fair comparison between the two paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IngestBenchmark {
+
+    @Param({"status", "raw", "raw+twitter4j"})
+    public String path;
+
+    private StreamProcessor processor;
+    private String[] messages;
+    private Object[] statuses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws TwitterException {
+        String[] keyWords = {"android", "ios", "music"};
+        messages = Messages.create(keyWords);
+        statuses = new Object[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            statuses[i] = TwitterObjectFactory.createStatus(messages[i]);
+        }
+        processor = new StreamProcessor(keyWords, new long[keyWords.length], new StreamProcessor.Callback() {
+            @Override
+            public void onBatch(List<Tweet> tweets, List<RetweetAggregator.Group> retweets, String[] keyWords, long[] counts) {
+            }
+
+            @Override
+            public void onFallingBehind(String code, String message, int percentFull) {
+            }
+
+            @Override
+            public void onTrending(List<HeavyHitters.Item> terms) {
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        processor.shutdown();
+    }
+
+    @Benchmark
+    public void process() throws TwitterException {
+        int i = next++ & (Messages.COUNT - 1);
+        switch (path) {
+            case "status":
+                processor.process(statuses[i]);
+                break;
+            case "raw":
+                processor.process(messages[i]);
+                break;
+            case "raw+twitter4j":
+                processor.process(TwitterObjectFactory.createStatus(messages[i]));
+                break;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.camtech.android.tweetbot.benchmarks;
+
+import com.camtech.android.tweetbot.core.KeywordMatcher;
+import com.camtech.android.tweetbot.core.StatusRecord;
+import com.camtech.android.tweetbot.core.TweetJsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long it takes to find every keyword in a status,
+ * depending on how many keywords are tracked
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeywordMatcherBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int numKeyWords;
+
+    private KeywordMatcher matcher;
+    private String[] texts;
+    private int[] hits;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] keyWords = new String[numKeyWords];
+        keyWords[0] = "android";
+        for (int i = 1; i < numKeyWords; i++) keyWords[i] = "keyword" + i;
+        matcher = new KeywordMatcher(keyWords);
+        hits = new int[numKeyWords];
+
+        String[] messages = Messages.create(keyWords);
+        TweetJsonParser parser = new TweetJsonParser();
+        StatusRecord record = new StatusRecord();
+        texts = new String[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            parser.parse(messages[i], record);
+            texts[i] = record.text;
+        }
+    }
+
+    @Benchmark
+    public int match() {
+        return matcher.match(texts[next++ & (Messages.COUNT - 1)], hits);
+    }
+}
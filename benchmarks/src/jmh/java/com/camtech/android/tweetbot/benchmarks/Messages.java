@@ -0,0 +1,27 @@
+package com.camtech.android.tweetbot.benchmarks;
+
+import com.camtech.android.tweetbot.core.SyntheticSource;
+
+/**
+ * Stream messages shared by the benchmarks. They're made up with a fixed
+ * seed so every run, and every commit, benchmarks the same input.
+ */
+final class Messages {
+    // A power of 2 so the benchmarks can cycle through them with a mask
+    static final int COUNT = 1024;
+    static final long START_TIME = 1_531_418_671_000L;
+
+    private Messages() {
+    }
+
+    static String[] create(String... keyWords) {
+        SyntheticSource source = new SyntheticSource.Builder(keyWords)
+                .seed(42)
+                .build(null);
+        String[] messages = new String[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            messages[i] = source.nextStatus(START_TIME + i * 20L);
+        }
+        return messages;
+    }
+}
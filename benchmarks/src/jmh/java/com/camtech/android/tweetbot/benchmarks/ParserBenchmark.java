@@ -0,0 +1,48 @@
+package com.camtech.android.tweetbot.benchmarks;
+
+import com.camtech.android.tweetbot.core.StatusRecord;
+import com.camtech.android.tweetbot.core.TweetJsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import twitter4j.Status;
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+
+/**
+ * Reading a raw message with {@link TweetJsonParser} compared to twitter4j
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserBenchmark {
+
+    private final TweetJsonParser parser = new TweetJsonParser();
+    private final StatusRecord record = new StatusRecord();
+    private String[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        messages = Messages.create("android");
+    }
+
+    @Benchmark
+    public StatusRecord tweetJsonParser() {
+        parser.parse(messages[next++ & (Messages.COUNT - 1)], record);
+        return record;
+    }
+
+    @Benchmark
+    public Status twitter4j() throws TwitterException {
+        return TwitterObjectFactory.createStatus(messages[next++ & (Messages.COUNT - 1)]);
+    }
+}
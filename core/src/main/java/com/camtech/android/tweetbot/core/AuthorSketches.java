@@ -0,0 +1,73 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds a {@link HyperLogLog} of the users who posted the tweets of each
+ * keyword, so the number of different authors can be estimated next to
+ * the number of occurrences in the {@link CounterStore}.
+ * <p>
+ * The sketches are saved along with the counts by the counter store's
+ * {@link CounterStore.Persister}. Loading a saved sketch merges it into the
+ * one in memory, so it's safe to load it for a keyword that's already here.
+ */
+public final class AuthorSketches {
+
+    private static final AuthorSketches defaultInstance = new AuthorSketches();
+
+    private final ConcurrentHashMap<String, HyperLogLog> sketches = new ConcurrentHashMap<>();
+
+    public static AuthorSketches getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * Returns the sketch of a keyword, creating an empty one if it isn't here yet
+     */
+    public HyperLogLog sketch(String keyWord) {
+        HyperLogLog sketch = sketches.get(keyWord);
+        if (sketch == null) {
+            sketch = new HyperLogLog();
+            HyperLogLog existing = sketches.putIfAbsent(keyWord, sketch);
+            if (existing != null) sketch = existing;
+        }
+        return sketch;
+    }
+
+    /**
+     * Returns the sketch of a keyword or null if it isn't here
+     */
+    public HyperLogLog get(String keyWord) {
+        return sketches.get(keyWord);
+    }
+
+    /**
+     * Merges a sketch saved with {@link HyperLogLog#toBytes()} into the keyword's sketch.
+     * Anything that isn't a saved sketch is ignored.
+     */
+    public void load(String keyWord, byte[] saved) {
+        if (saved == null || saved.length != HyperLogLog.SIZE_IN_BYTES) return;
+        sketch(keyWord).merge(HyperLogLog.fromBytes(saved));
+    }
+
+    /**
+     * Returns roughly how many different users posted tweets
+     * with the keyword or -1 if it isn't here
+     */
+    public long estimate(String keyWord) {
+        HyperLogLog sketch = sketches.get(keyWord);
+        return sketch != null ? sketch.estimate() : -1;
+    }
+
+    /**
+     * Takes the keyword's sketch out. Like {@link CounterStore#remove(String)},
+     * it should only be removed once it's been saved and nothing adds to it anymore.
+     */
+    public void remove(String keyWord) {
+        sketches.remove(keyWord);
+    }
+
+    public void clear() {
+        sketches.clear();
+    }
+}
@@ -0,0 +1,108 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects items from any number of threads and hands them off in batches.
+ * A batch is sent once the window since the first pending item has passed
+ * or once enough items have piled up, whichever comes first.
+ * <p>
+ * The window adapts to how fast items are coming in. When things are quiet,
+ * items are sent almost right away so the UI feels live. When a keyword is
+ * busy, the window stretches out so receivers wake up fewer times a second.
+ */
+public final class Batcher<T> {
+
+    public interface BatchListener<T> {
+        /**
+         * Called on the batcher's thread with every item added since the last batch
+         */
+        void onBatch(List<T> batch);
+    }
+
+    public static final long MIN_WINDOW_MS = 16;
+    public static final long MAX_WINDOW_MS = 100;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    // Rate (items per second) at which the window is stretched all the way out
+    private static final double HIGH_RATE = 200;
+    // How much weight the newest batch has on the rate estimate
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private final BatchListener<T> listener;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private List<T> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private long lastFlushTime = System.currentTimeMillis();
+    private double rate;
+
+    public Batcher(String name, BatchListener<T> listener) {
+        this(name, DEFAULT_MAX_BATCH_SIZE, listener);
+    }
+
+    public Batcher(String name, int maxBatchSize, BatchListener<T> listener) {
+        this.listener = listener;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void add(T item) {
+        boolean flushNow = false;
+        long delay = 0;
+        synchronized (this) {
+            pending.add(item);
+            if (pending.size() >= maxBatchSize) {
+                flushNow = true;
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                delay = getWindow();
+            } else {
+                return;
+            }
+        }
+        if (flushNow) {
+            scheduler.execute(this::flush);
+        } else {
+            scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns how long items are currently held before being sent
+     */
+    public synchronized long getWindow() {
+        double load = Math.min(1, rate / HIGH_RATE);
+        return MIN_WINDOW_MS + Math.round((MAX_WINDOW_MS - MIN_WINDOW_MS) * load);
+    }
+
+    /**
+     * Stops the batcher. Anything still pending is thrown away.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void flush() {
+        List<T> batch;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>(batch.size());
+
+            long now = System.currentTimeMillis();
+            double elapsedSeconds = Math.max(now - lastFlushTime, 1) / 1000.0;
+            rate += RATE_SMOOTHING * (batch.size() / elapsedSeconds - rate);
+            lastFlushTime = now;
+        }
+        listener.onBatch(batch);
+    }
+}
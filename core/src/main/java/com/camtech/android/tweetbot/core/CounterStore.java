@@ -0,0 +1,224 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The one place the number of occurrences of each keyword is kept while the
+ * stream is running. The {@link StreamProcessor} counts into it, the UI reads
+ * from it and it saves itself every so often through a {@link Persister}, so
+ * nothing else needs its own copy of the counts.
+ * <p>
+ * Counting never takes a lock. Every counter is split into a few cells and
+ * each thread adds to its own cell, so the workers matching the same keyword
+ * don't keep taking the same cache line away from each other. Reading a count
+ * adds the cells up.
+ * <p>
+ * Counts only ever go up, so a count read from the store is never lower than
+ * one read before it. Checkpoints are taken one at a time and only save the
+ * counts that changed, which means the saved counts never go backwards either.
+ */
+public final class CounterStore {
+
+    /**
+     * Saves the counts somewhere they'll survive the process being killed
+     */
+    public interface Persister {
+        /**
+         * Called from the checkpoint thread, or whichever thread called
+         * {@link #checkpoint()}, with every count that changed since the last checkpoint
+         */
+        void save(Map<String, Long> counts);
+    }
+
+    public static final long DEFAULT_CHECKPOINT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // Enough for the workers and the odd thread reading the stream on any phone
+    private static final int NUM_CELLS = 8;
+    // A cache line is 64 bytes, so cells 8 longs apart never share one
+    private static final int PADDING = 8;
+
+    public static final class Counter {
+        private final AtomicLongArray cells = new AtomicLongArray(NUM_CELLS * PADDING);
+        private final long initialCount;
+
+        Counter(long initialCount) {
+            this.initialCount = initialCount;
+            cells.set(0, initialCount);
+        }
+
+        public void increment() {
+            add(1);
+        }
+
+        /**
+         * @param amount Has to be positive, counts only go up
+         */
+        public void add(long amount) {
+            int cell = (int) Thread.currentThread().getId() & (NUM_CELLS - 1);
+            cells.getAndAdd(cell * PADDING, amount);
+        }
+
+        /**
+         * Returns the count, which is somewhere between the count when the
+         * call started and the count when it returned
+         */
+        public long get() {
+            long count = 0;
+            for (int i = 0; i < NUM_CELLS; i++) count += cells.get(i * PADDING);
+            return count;
+        }
+
+        /**
+         * Returns the count the counter started from when it was added to the store
+         */
+        public long getInitialCount() {
+            return initialCount;
+        }
+    }
+
+    private static final CounterStore defaultInstance = new CounterStore();
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    // Only touched while holding the checkpoint lock
+    private final Object checkpointLock = new Object();
+    private final Map<String, Long> saved = new HashMap<>();
+    private Persister persister;
+    private ScheduledExecutorService executor;
+
+    public static CounterStore getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * Returns the counter for a keyword, creating it if it isn't in the store yet
+     *
+     * @param initialCount The count a new counter starts from, usually the last
+     *                     saved one. It's ignored if the counter already exists.
+     */
+    public Counter counter(String keyWord, long initialCount) {
+        Counter counter = counters.get(keyWord);
+        if (counter == null) {
+            counter = new Counter(initialCount);
+            Counter existing = counters.putIfAbsent(keyWord, counter);
+            if (existing != null) {
+                counter = existing;
+            } else {
+                synchronized (checkpointLock) {
+                    // The count it started from is already saved
+                    saved.put(keyWord, initialCount);
+                }
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the count of a keyword or -1 if it isn't in the store
+     */
+    public long get(String keyWord) {
+        Counter counter = counters.get(keyWord);
+        return counter != null ? counter.get() : -1;
+    }
+
+    /**
+     * Returns the count a keyword started from when it was added to the store
+     * or -1 if it isn't in the store
+     */
+    public long getInitialCount(String keyWord) {
+        Counter counter = counters.get(keyWord);
+        return counter != null ? counter.getInitialCount() : -1;
+    }
+
+    /**
+     * Returns the count of every keyword in the store, in order
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Saves the keyword's count and takes it out of the store. Anything
+     * counted into it after that is lost, so it should only be removed
+     * once nothing counts it anymore.
+     */
+    public void remove(String keyWord) {
+        synchronized (checkpointLock) {
+            Counter counter = counters.get(keyWord);
+            if (counter == null) return;
+            save(Collections.singletonMap(keyWord, counter.get()));
+            counters.remove(keyWord);
+            saved.remove(keyWord);
+        }
+    }
+
+    /**
+     * Saves every count that changed since the last checkpoint every {@code periodMillis}.
+     * Any checkpoints that were already scheduled are stopped first.
+     */
+    public void startCheckpoints(Persister persister, long periodMillis) {
+        stopCheckpoints();
+        synchronized (checkpointLock) {
+            this.persister = persister;
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "CounterCheckpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::checkpoint, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the scheduled checkpoints after taking one last checkpoint,
+     * then empties the store. The next time the stream starts, the counts
+     * are loaded from wherever the persister saved them.
+     */
+    public void stopCheckpoints() {
+        synchronized (checkpointLock) {
+            if (executor == null) return;
+            executor.shutdownNow();
+            executor = null;
+            checkpoint();
+            persister = null;
+            counters.clear();
+            saved.clear();
+        }
+    }
+
+    /**
+     * Saves every count that changed since the last checkpoint right away.
+     * Nothing happens if checkpoints haven't been started.
+     */
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            Map<String, Long> changed = new TreeMap<>();
+            for (Map.Entry<String, Long> entry : snapshot().entrySet()) {
+                Long last = saved.get(entry.getKey());
+                if (last == null || entry.getValue() > last) changed.put(entry.getKey(), entry.getValue());
+            }
+            if (!changed.isEmpty()) save(changed);
+        }
+    }
+
+    private void save(Map<String, Long> counts) {
+        if (persister == null) return;
+        try {
+            persister.save(counts);
+            saved.putAll(counts);
+        } catch (RuntimeException e) {
+            // Leave them marked as changed so the next checkpoint tries again
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.camtech.android.tweetbot.core;
+
+/**
+ * A {@link StatusSource} whose keywords can be changed while it's running
+ */
+public interface FilterableSource extends StatusSource {
+
+    /**
+     * Starts delivering statuses for the new keywords instead of the old ones
+     * without having to create a new source. This shouldn't block.
+     */
+    void refilter(String[] keyWords);
+}
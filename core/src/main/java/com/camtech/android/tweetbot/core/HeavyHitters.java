@@ -0,0 +1,159 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the terms that come up the most in a stream without counting every
+ * term, using the Space-Saving algorithm. Only a fixed number of terms are
+ * counted. When a new term comes in and there's no room for it, it takes the
+ * place of the term with the lowest count and starts from that count, so the
+ * memory used stays the same no matter how many different terms there are.
+ * <p>
+ * A term that really is frequent can't be pushed out for long, which means
+ * every term that occurs more than {@code total / capacity} times is in the
+ * summary. A count can be too high, by at most the term's error.
+ * <p>
+ * Every method is synchronized. The {@link TrendingTerms} give each worker
+ * thread its own summary, so the lock is almost never contended.
+ */
+public final class HeavyHitters {
+
+    /**
+     * A term along with its estimated count
+     */
+    public static final class Item {
+        private final String term;
+        private final long count;
+        private final long error;
+
+        public Item(String term, long count, long error) {
+            this.term = term;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns how much the count might be too high by
+         */
+        public long getError() {
+            return error;
+        }
+    }
+
+    private static final class Counter {
+        String term;
+        long count;
+        long error;
+        int heapIndex;
+    }
+
+    private final Map<String, Counter> counters;
+    // A min heap on the count so the term to replace is always at the top
+    private final Counter[] heap;
+    private int size;
+
+    /**
+     * @param capacity The most terms counted at once
+     */
+    public HeavyHitters(int capacity) {
+        counters = new HashMap<>(capacity * 4 / 3 + 1);
+        heap = new Counter[capacity];
+    }
+
+    public synchronized void add(String term) {
+        Counter counter = counters.get(term);
+        if (counter == null) {
+            if (size < heap.length) {
+                counter = new Counter();
+                counter.heapIndex = size;
+                heap[size++] = counter;
+            } else {
+                // Take over the spot of the term with the lowest count
+                counter = heap[0];
+                counters.remove(counter.term);
+                counter.error = counter.count;
+            }
+            counter.term = term;
+            counters.put(term, counter);
+        }
+        counter.count++;
+        siftDown(counter.heapIndex);
+    }
+
+    /**
+     * Halves every count so the terms that stopped coming up
+     * make way for the ones that are coming up now
+     */
+    public synchronized void halve() {
+        // Halving every count keeps the heap in order
+        for (int i = 0; i < size; i++) {
+            heap[i].count /= 2;
+            heap[i].error /= 2;
+        }
+    }
+
+    /**
+     * Adds every term and its count into the given map
+     */
+    public synchronized void addCountsTo(Map<String, long[]> counts) {
+        for (int i = 0; i < size; i++) {
+            long[] sums = counts.get(heap[i].term);
+            if (sums == null) {
+                sums = new long[2];
+                counts.put(heap[i].term, sums);
+            }
+            sums[0] += heap[i].count;
+            sums[1] += heap[i].error;
+        }
+    }
+
+    /**
+     * Returns the terms with the highest counts, highest first
+     */
+    public List<Item> top(int limit) {
+        Map<String, long[]> counts = new HashMap<>();
+        addCountsTo(counts);
+        return top(counts, limit);
+    }
+
+    /**
+     * Returns the terms with the highest counts from a map filled by {@link #addCountsTo(Map)}
+     */
+    static List<Item> top(Map<String, long[]> counts, int limit) {
+        List<Item> items = new ArrayList<>(counts.size());
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            if (entry.getValue()[0] > 0) {
+                items.add(new Item(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+            }
+        }
+        Collections.sort(items, (a, b) -> Long.compare(b.count, a.count));
+        return items.size() > limit ? new ArrayList<>(items.subList(0, limit)) : items;
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) child++;
+            if (heap[child].count >= counter.count) break;
+            heap[index] = heap[child];
+            heap[index].heapIndex = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+}
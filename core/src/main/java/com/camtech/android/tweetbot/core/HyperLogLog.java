@@ -0,0 +1,125 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.Arrays;
+
+/**
+ * Estimates how many different values were added without remembering
+ * them. Each value is hashed, the first {@link #PRECISION} bits of the hash
+ * pick one of 2048 registers and the register keeps the longest run of
+ * leading zeros seen in the rest of the hash. The more values there are, the
+ * longer the runs get, so the registers together give an estimate that's
+ * usually within a few percent of the real number.
+ * <p>
+ * Registers only ever go up, which means two sketches are merged by taking
+ * the larger of each register. Merging the same sketch twice doesn't change
+ * anything, so a saved sketch can be merged back in without counting anyone
+ * twice. Saved, each register takes 6 bits so a sketch is 1.5 KB.
+ * <p>
+ * Adding is safe from any thread. Most values don't raise their register, so
+ * the lock is only taken for the few that do.
+ */
+public final class HyperLogLog {
+
+    public static final int PRECISION = 11;
+    public static final int NUM_REGISTERS = 1 << PRECISION;
+    private static final int BITS_PER_REGISTER = 6;
+    public static final int SIZE_IN_BYTES = NUM_REGISTERS * BITS_PER_REGISTER / 8;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / NUM_REGISTERS);
+
+    private final byte[] registers = new byte[NUM_REGISTERS];
+
+    /**
+     * Reads a sketch saved with {@link #toBytes()}
+     *
+     * @throws IllegalArgumentException If the bytes aren't a saved sketch
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length != SIZE_IN_BYTES) {
+            throw new IllegalArgumentException("A sketch is " + SIZE_IN_BYTES + " bytes, not " + bytes.length);
+        }
+        HyperLogLog sketch = new HyperLogLog();
+        // Every 3 bytes hold 4 registers
+        for (int i = 0, b = 0; i < NUM_REGISTERS; i += 4, b += 3) {
+            int bits = (bytes[b] & 0xff) << 16 | (bytes[b + 1] & 0xff) << 8 | (bytes[b + 2] & 0xff);
+            sketch.registers[i] = (byte) (bits >>> 18 & 0x3f);
+            sketch.registers[i + 1] = (byte) (bits >>> 12 & 0x3f);
+            sketch.registers[i + 2] = (byte) (bits >>> 6 & 0x3f);
+            sketch.registers[i + 3] = (byte) (bits & 0x3f);
+        }
+        return sketch;
+    }
+
+    public void add(long value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - PRECISION));
+        // The run of zeros is at most 64 - PRECISION long, so it always fits in 6 bits
+        byte rank = (byte) (Long.numberOfLeadingZeros(hash << PRECISION | 1L << (PRECISION - 1)) + 1);
+        // A stale read can only be lower than the real register, so skipping here is always right
+        if (rank <= registers[index]) return;
+        synchronized (this) {
+            if (rank > registers[index]) registers[index] = rank;
+        }
+    }
+
+    /**
+     * Adds everything counted by another sketch to this one
+     */
+    public void merge(HyperLogLog other) {
+        byte[] otherRegisters = other.copyRegisters();
+        synchronized (this) {
+            for (int i = 0; i < NUM_REGISTERS; i++) {
+                if (otherRegisters[i] > registers[i]) registers[i] = otherRegisters[i];
+            }
+        }
+    }
+
+    /**
+     * Returns roughly how many different values were added
+     */
+    public long estimate() {
+        byte[] registers = copyRegisters();
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) zeros++;
+        }
+        double estimate = ALPHA * NUM_REGISTERS * NUM_REGISTERS / sum;
+        // The estimate is biased for small numbers, where counting
+        // the registers that are still empty works better
+        if (estimate <= 2.5 * NUM_REGISTERS && zeros > 0) {
+            estimate = NUM_REGISTERS * Math.log((double) NUM_REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        byte[] registers = copyRegisters();
+        byte[] bytes = new byte[SIZE_IN_BYTES];
+        for (int i = 0, b = 0; i < NUM_REGISTERS; i += 4, b += 3) {
+            int bits = registers[i] << 18 | registers[i + 1] << 12 | registers[i + 2] << 6 | registers[i + 3];
+            bytes[b] = (byte) (bits >>> 16);
+            bytes[b + 1] = (byte) (bits >>> 8);
+            bytes[b + 2] = (byte) bits;
+        }
+        return bytes;
+    }
+
+    private synchronized byte[] copyRegisters() {
+        return Arrays.copyOf(registers, NUM_REGISTERS);
+    }
+
+    /**
+     * Spreads the bits of a value over the whole hash (the finalizer from
+     * MurmurHash3), since ids that are close together would otherwise
+     * land in the same few registers
+     */
+    private static long hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
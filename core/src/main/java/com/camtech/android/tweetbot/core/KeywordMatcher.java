@@ -0,0 +1,175 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds every tracked keyword in a piece of text in a single pass using an
+ * <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">Aho-Corasick</a>
+ * automaton. The automaton is built once when the stream starts so the cost of
+ * matching a status only depends on the length of its text, not on the number
+ * of keywords we're listening for.
+ * <p>
+ * Matching is case insensitive and, like Twitter's own track filter, a keyword
+ * only counts if it isn't part of a bigger word (i.e. "cat" won't match "category").
+ * <p>
+ * Instances are immutable so the same matcher can be shared between threads.
+ */
+public final class KeywordMatcher {
+
+    private final String[] keyWords;
+    private final int[] lengths;
+    // The sorted characters leaving each node along with the node they lead to
+    private final char[][] edges;
+    private final int[][] targets;
+    private final int[] fail;
+    // The keywords that end at each node, including the ones
+    // reachable through the node's failure links
+    private final int[][] outputs;
+
+    public KeywordMatcher(String... keyWords) {
+        this.keyWords = keyWords.clone();
+        this.lengths = new int[keyWords.length];
+
+        List<StringBuilder> nodeEdges = new ArrayList<>();
+        List<List<Integer>> nodeTargets = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        nodeEdges.add(new StringBuilder());
+        nodeTargets.add(new ArrayList<>());
+        nodeOutputs.add(new ArrayList<>());
+
+        // Build the trie
+        for (int k = 0; k < keyWords.length; k++) {
+            String keyWord = keyWords[k];
+            lengths[k] = keyWord.length();
+            int node = 0;
+            for (int i = 0; i < keyWord.length(); i++) {
+                char c = Character.toLowerCase(keyWord.charAt(i));
+                int edge = nodeEdges.get(node).indexOf(String.valueOf(c));
+                if (edge >= 0) {
+                    node = nodeTargets.get(node).get(edge);
+                } else {
+                    int next = nodeEdges.size();
+                    nodeEdges.add(new StringBuilder());
+                    nodeTargets.add(new ArrayList<>());
+                    nodeOutputs.add(new ArrayList<>());
+                    nodeEdges.get(node).append(c);
+                    nodeTargets.get(node).add(next);
+                    node = next;
+                }
+            }
+            // Empty keywords can't match anything
+            if (node != 0) nodeOutputs.get(node).add(k);
+        }
+
+        int size = nodeEdges.size();
+        edges = new char[size][];
+        targets = new int[size][];
+        for (int node = 0; node < size; node++) {
+            // Sort the edges so they can be binary searched while matching
+            char[] chars = nodeEdges.get(node).toString().toCharArray();
+            List<Integer> next = nodeTargets.get(node);
+            Integer[] order = new Integer[chars.length];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Character.compare(chars[a], chars[b]));
+            edges[node] = new char[chars.length];
+            targets[node] = new int[chars.length];
+            for (int i = 0; i < order.length; i++) {
+                edges[node][i] = chars[order[i]];
+                targets[node][i] = next.get(order[i]);
+            }
+        }
+
+        // Breadth first search to set up the failure links
+        fail = new int[size];
+        Queue<Integer> queue = new LinkedList<>();
+        for (int child : targets[0]) queue.add(child);
+        while (!queue.isEmpty()) {
+            int node = queue.remove();
+            nodeOutputs.get(node).addAll(nodeOutputs.get(fail[node]));
+            for (int i = 0; i < edges[node].length; i++) {
+                int child = targets[node][i];
+                int state = fail[node];
+                int next = step(state, edges[node][i]);
+                while (next < 0 && state != 0) {
+                    state = fail[state];
+                    next = step(state, edges[node][i]);
+                }
+                fail[child] = next < 0 ? 0 : next;
+                queue.add(child);
+            }
+        }
+
+        outputs = new int[size][];
+        for (int node = 0; node < size; node++) {
+            List<Integer> out = nodeOutputs.get(node);
+            outputs[node] = new int[out.size()];
+            for (int i = 0; i < out.size(); i++) outputs[node][i] = out.get(i);
+        }
+    }
+
+    /**
+     * Returns the number of keywords this matcher was built with
+     */
+    public int size() {
+        return keyWords.length;
+    }
+
+    public String getKeyWord(int index) {
+        return keyWords[index];
+    }
+
+    public String[] getKeyWords() {
+        return keyWords.clone();
+    }
+
+    /**
+     * Scans the text once and writes the index of every keyword found into
+     * {@code hits}. Each keyword is only reported once no matter how many
+     * times it shows up in the text.
+     *
+     * @param text The text to search
+     * @param hits Receives the matched keyword indices, must have room for {@link #size()} values
+     * @return The number of indices written to {@code hits}
+     */
+    public int match(CharSequence text, int[] hits) {
+        if (text == null) return 0;
+        int found = 0;
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = step(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = step(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            for (int k : outputs[state]) {
+                if (isBoundary(text, i - lengths[k]) && isBoundary(text, i + 1) && !contains(hits, found, k)) {
+                    hits[found++] = k;
+                }
+            }
+        }
+        return found;
+    }
+
+    private int step(int node, char c) {
+        int i = Arrays.binarySearch(edges[node], c);
+        return i >= 0 ? targets[node][i] : -1;
+    }
+
+    private static boolean isBoundary(CharSequence text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static boolean contains(int[] hits, int count, int k) {
+        for (int i = 0; i < count; i++) {
+            if (hits[i] == k) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,190 @@
+package com.camtech.android.tweetbot.core;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A registry of named counters, gauges and latency histograms describing how
+ * the stream is doing. Recording a value never takes a lock so the hot paths
+ * can be measured without slowing them down; only reading the values, which
+ * happens when they're shown or dumped, does any real work.
+ * <p>
+ * Metrics are looked up once, usually when the class using them is created, and
+ * then kept in a field. Asking for the same name twice returns the same metric.
+ */
+public final class Metrics {
+
+    /**
+     * A value that's read when the metrics are shown instead of being recorded
+     */
+    public interface Gauge {
+        long getValue();
+    }
+
+    public static final class Counter {
+        private final AtomicLong count = new AtomicLong();
+
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        public void add(long amount) {
+            count.addAndGet(amount);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+    }
+
+    /**
+     * Counts durations into fixed buckets whose bounds double from one
+     * microsecond up to about a minute. Percentiles are only as precise
+     * as the bucket they fall in, which is plenty for spotting problems.
+     */
+    public static final class Histogram {
+        // Bucket i holds durations below 2^i microseconds, the last one holds everything else
+        static final int NUM_BUCKETS = 27;
+        private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        public void record(long nanos) {
+            long micros = Math.max(0, nanos / 1_000);
+            int bucket = Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+        }
+
+        /**
+         * Records the time since {@code startNanos}, which came from {@link System#nanoTime()}
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMeanNanos() {
+            long count = this.count.get();
+            return count == 0 ? 0 : totalNanos.get() / count;
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given percentile
+         *
+         * @param percentile From 0 to 100
+         */
+        public long getPercentileNanos(double percentile) {
+            long[] snapshot = new long[NUM_BUCKETS];
+            long total = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank && snapshot[i] > 0) return TimeUnit.MICROSECONDS.toNanos(1L << i);
+            }
+            return TimeUnit.MICROSECONDS.toNanos(1L << (NUM_BUCKETS - 1));
+        }
+    }
+
+    private static final Metrics defaultInstance = new Metrics();
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public static Metrics getDefault() {
+        return defaultInstance;
+    }
+
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter();
+            Counter existing = counters.putIfAbsent(name, counter);
+            if (existing != null) counter = existing;
+        }
+        return counter;
+    }
+
+    public Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram existing = histograms.putIfAbsent(name, histogram);
+            if (existing != null) histogram = existing;
+        }
+        return histogram;
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge already registered with the same name
+     */
+    public void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Removes a gauge so whatever it reads from can be garbage collected.
+     * Nothing happens if another gauge has replaced it since.
+     */
+    public void removeGauge(String name, Gauge gauge) {
+        gauges.remove(name, gauge);
+    }
+
+    /**
+     * Returns the current value of every counter and gauge by name, in order
+     */
+    public Map<String, Long> getValues() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getCount());
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Returns every histogram by name, in order
+     */
+    public Map<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * Writes every metric in a plain text format meant to be pasted into bug reports
+     */
+    public void dump(PrintWriter writer) {
+        for (Map.Entry<String, Long> entry : getValues().entrySet()) {
+            writer.println(entry.getKey() + ": " + entry.getValue());
+        }
+        for (Map.Entry<String, Histogram> entry : getHistograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+            writer.println(String.format(Locale.US,
+                    "%s: count=%d mean=%.3fms p50<=%.3fms p99<=%.3fms",
+                    entry.getKey(),
+                    histogram.getCount(),
+                    histogram.getMeanNanos() / 1e6,
+                    histogram.getPercentileNanos(50) / 1e6,
+                    histogram.getPercentileNanos(99) / 1e6));
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,258 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how many times each keyword occurred in every minute so it can be
+ * seen when a keyword spiked, not just how many times it occurred overall.
+ * <p>
+ * Nothing extra is done for each tweet. At the start of every minute the
+ * counts in the {@link CounterStore} are read, and whatever each count went up
+ * by since the last read belongs to the minute that just ended. The minutes are
+ * kept in memory and handed to a {@link Sink} every few minutes, already added
+ * up into hours and days as well, so a graph of a week or a year doesn't have
+ * to add up thousands of minutes. Each {@link Tier} is only kept for so long.
+ */
+public final class OccurrenceSeries {
+
+    /**
+     * How finely the occurrences are bucketed. Finer tiers are deleted sooner.
+     */
+    public enum Tier {
+        MINUTE(0, TimeUnit.MINUTES.toMillis(1), TimeUnit.DAYS.toMillis(2)),
+        HOUR(1, TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(90)),
+        // Days are UTC days
+        DAY(2, TimeUnit.DAYS.toMillis(1), Long.MAX_VALUE);
+
+        // A graph shouldn't need more points than this
+        private static final int MAX_POINTS = 500;
+
+        private final int id;
+        private final long bucketMillis;
+        private final long retentionMillis;
+
+        Tier(int id, long bucketMillis, long retentionMillis) {
+            this.id = id;
+            this.bucketMillis = bucketMillis;
+            this.retentionMillis = retentionMillis;
+        }
+
+        /**
+         * Returns the number the tier is saved as
+         */
+        public int getId() {
+            return id;
+        }
+
+        public long getBucketMillis() {
+            return bucketMillis;
+        }
+
+        /**
+         * Returns how long buckets of this tier are kept for
+         */
+        public long getRetentionMillis() {
+            return retentionMillis;
+        }
+
+        /**
+         * Returns the start of the bucket the given time falls in
+         */
+        public long bucketStart(long time) {
+            return time - time % bucketMillis;
+        }
+
+        public static Tier fromId(int id) {
+            for (Tier tier : values()) {
+                if (tier.id == id) return tier;
+            }
+            throw new IllegalArgumentException("Unknown tier " + id);
+        }
+
+        /**
+         * Returns the finest tier that still has the whole window
+         * and doesn't need too many points to show it
+         *
+         * @param now The current time, used to know which tiers were already deleted
+         */
+        public static Tier forWindow(long start, long end, long now) {
+            for (Tier tier : values()) {
+                boolean kept = tier.retentionMillis == Long.MAX_VALUE || start >= now - tier.retentionMillis;
+                if (kept && (end - start) / tier.bucketMillis <= MAX_POINTS) return tier;
+            }
+            return DAY;
+        }
+    }
+
+    /**
+     * The number of occurrences of a keyword in one bucket
+     */
+    public static final class Bucket {
+        private final String keyWord;
+        private final Tier tier;
+        private final long start;
+        private final long count;
+
+        public Bucket(String keyWord, Tier tier, long start, long count) {
+            this.keyWord = keyWord;
+            this.tier = tier;
+            this.start = start;
+            this.count = count;
+        }
+
+        public String getKeyWord() {
+            return keyWord;
+        }
+
+        public Tier getTier() {
+            return tier;
+        }
+
+        /**
+         * Returns the start of the bucket in milliseconds since the epoch
+         */
+        public long getStart() {
+            return start;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the average number of occurrences a minute over the bucket
+         */
+        public double getPerMinute() {
+            return count * (double) TimeUnit.MINUTES.toMillis(1) / tier.bucketMillis;
+        }
+    }
+
+    public interface Sink {
+        /**
+         * Called with buckets whose counts have to be added to any that were
+         * saved before for the same keyword, tier and start. That's because the
+         * same minute can be handed over twice if the stream is restarted.
+         */
+        void save(List<Bucket> buckets);
+    }
+
+    public static final long DEFAULT_FLUSH_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MINUTE_MILLIS = Tier.MINUTE.bucketMillis;
+
+    private final CounterStore counterStore;
+    private final Sink sink;
+    private final long flushMillis;
+    // Everything below is guarded by this
+    private final Map<String, Long> lastCounts = new HashMap<>();
+    private long lastSample;
+    // Minutes that haven't been handed to the sink yet, by keyword then start
+    private final Map<String, Map<Long, Long>> pending = new LinkedHashMap<>();
+    private ScheduledExecutorService executor;
+
+    public OccurrenceSeries(CounterStore counterStore, Sink sink) {
+        this(counterStore, sink, DEFAULT_FLUSH_MILLIS);
+    }
+
+    /**
+     * @param flushMillis How often the minutes are handed to the sink
+     */
+    public OccurrenceSeries(CounterStore counterStore, Sink sink, long flushMillis) {
+        this.counterStore = counterStore;
+        this.sink = sink;
+        this.flushMillis = flushMillis;
+    }
+
+    /**
+     * Starts reading the counts at the start of every minute. The counts
+     * the store has now are what the first minute is measured from.
+     */
+    public synchronized void start() {
+        long now = System.currentTimeMillis();
+        lastCounts.clear();
+        lastCounts.putAll(counterStore.snapshot());
+        lastSample = now;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "OccurrenceSeries");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long untilNextMinute = Tier.MINUTE.bucketStart(now) + MINUTE_MILLIS - now;
+        executor.scheduleAtFixedRate(
+                () -> sample(System.currentTimeMillis()), untilNextMinute, MINUTE_MILLIS, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records the minute so far and hands everything that's left to the sink
+     */
+    public synchronized void stop() {
+        if (executor == null) return;
+        executor.shutdownNow();
+        executor = null;
+        sample(System.currentTimeMillis());
+        flush();
+    }
+
+    /**
+     * Reads the counts and puts whatever they went up by into the minute the
+     * last read was in. This happens on its own every minute, but it should
+     * also be done right before a keyword is taken out of the counter store.
+     */
+    public synchronized void sample(long now) {
+        long minute = Tier.MINUTE.bucketStart(lastSample);
+        for (Map.Entry<String, Long> entry : counterStore.snapshot().entrySet()) {
+            String keyWord = entry.getKey();
+            long count = entry.getValue();
+            Long last = lastCounts.get(keyWord);
+            // A keyword added since the last read is measured from where it started
+            long from = last != null ? last : counterStore.getInitialCount(keyWord);
+            lastCounts.put(keyWord, count);
+            if (from < 0 || count <= from) continue;
+
+            Map<Long, Long> minutes = pending.get(keyWord);
+            if (minutes == null) {
+                minutes = new HashMap<>();
+                pending.put(keyWord, minutes);
+            }
+            Long sum = minutes.get(minute);
+            minutes.put(minute, (sum != null ? sum : 0) + count - from);
+        }
+        lastSample = now;
+    }
+
+    /**
+     * Hands every minute recorded since the last flush to the sink,
+     * along with the hours and days they add up to
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) return;
+        List<Bucket> buckets = new ArrayList<>();
+        for (Map.Entry<String, Map<Long, Long>> entry : pending.entrySet()) {
+            for (Tier tier : Tier.values()) {
+                Map<Long, Long> sums = new LinkedHashMap<>();
+                for (Map.Entry<Long, Long> minute : entry.getValue().entrySet()) {
+                    long start = tier.bucketStart(minute.getKey());
+                    Long sum = sums.get(start);
+                    sums.put(start, (sum != null ? sum : 0) + minute.getValue());
+                }
+                for (Map.Entry<Long, Long> sum : sums.entrySet()) {
+                    buckets.add(new Bucket(entry.getKey(), tier, sum.getKey(), sum.getValue()));
+                }
+            }
+        }
+        try {
+            sink.save(buckets);
+            pending.clear();
+        } catch (RuntimeException e) {
+            // Keep them so the next flush tries again
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.camtech.android.tweetbot.core;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import twitter4j.TwitterException;
+
+/**
+ * Keeps a {@link StatusSource} connected. When the source fails, the error is
+ * sorted into a {@link Failure} and, unless retrying can't help, the source is
+ * thrown away and a new one is connected after a backoff.
+ * <p>
+ * The backoff doubles with every failure in a row, starting from a delay that
+ * depends on the failure, and is jittered so many clients don't all come back at
+ * once. On top of that, no more than a set number of connections are made in any
+ * window of time since too many connection attempts is exactly what gets the
+ * stream rate limited.
+ * <p>
+ * Keyword changes go through {@link #refilter(String[])}. Changes made close
+ * together are combined into one, and the current source is refiltered instead
+ * of being replaced so the keywords change without a full reconnect.
+ * <p>
+ * See <a href="https://developer.twitter.com/en/docs/tweets/filter-realtime/guides/connecting">connecting to a streaming endpoint</a>
+ */
+public final class ReconnectSupervisor implements FilterableSource {
+
+    public enum Failure {
+        /**
+         * HTTP 420 or 429, we connected too often
+         */
+        RATE_LIMITED(60_000, 15 * 60_000, true),
+        /**
+         * HTTP 401, the user's token isn't valid anymore
+         */
+        AUTH(0, 0, false),
+        /**
+         * HTTP 403, 404, 406, 413 or 416. Twitter won't accept the request as
+         * it is, i.e. there are too many keywords, so trying again won't help.
+         */
+        REJECTED(0, 0, false),
+        /**
+         * The host couldn't be found, usually because the device lost its connection
+         */
+        DNS(1_000, 30_000, true),
+        /**
+         * The connection stalled
+         */
+        TIMEOUT(250, 16_000, true),
+        /**
+         * Any other problem with the connection
+         */
+        NETWORK(250, 16_000, true),
+        /**
+         * HTTP 5xx
+         */
+        SERVER(5_000, 320_000, true),
+        UNKNOWN(5_000, 320_000, true);
+
+        private final long baseDelayMillis;
+        private final long maxDelayMillis;
+        private final boolean retryable;
+
+        Failure(long baseDelayMillis, long maxDelayMillis, boolean retryable) {
+            this.baseDelayMillis = baseDelayMillis;
+            this.maxDelayMillis = maxDelayMillis;
+            this.retryable = retryable;
+        }
+
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        /**
+         * Sorts an error by its HTTP status code, or by its cause if there isn't one
+         */
+        public static Failure classify(Throwable error) {
+            if (error instanceof TwitterException) {
+                int code = ((TwitterException) error).getStatusCode();
+                if (code == 420 || code == 429) return RATE_LIMITED;
+                if (code == 401) return AUTH;
+                if (code == 403 || code == 404 || code == 406 || code == 413 || code == 416) return REJECTED;
+                if (code >= 500) return SERVER;
+            }
+            // twitter4j wraps the actual problem so we have to look through the causes.
+            // The depth is limited in case something points back at itself.
+            Throwable cause = error;
+            for (int depth = 0; cause != null && depth < 10; depth++, cause = cause.getCause()) {
+                if (cause instanceof UnknownHostException) return DNS;
+                if (cause instanceof SocketTimeoutException) return TIMEOUT;
+                if (cause instanceof IOException) return NETWORK;
+            }
+            if (error instanceof TwitterException && ((TwitterException) error).isCausedByNetworkIssue()) {
+                return NETWORK;
+            }
+            return UNKNOWN;
+        }
+    }
+
+    public interface SourceFactory {
+        /**
+         * Creates a new, not yet started, source. Sources are never reused after they fail.
+         */
+        StatusSource create();
+    }
+
+    public interface Listener {
+        /**
+         * Called when the source failed and a new one will be connected after the delay
+         *
+         * @param attempt How many times in a row the source has failed
+         */
+        void onReconnecting(Failure failure, long delayMillis, int attempt);
+
+        /**
+         * Called when the source failed in a way that retrying can't fix. The supervisor stops.
+         */
+        void onGaveUp(Failure failure, Exception error);
+
+        /**
+         * Called on the supervisor's thread right before the source switches
+         * to the new keywords. Sources created after this should use them too.
+         */
+        void onRefilter(String[] keyWords);
+    }
+
+    // Twitter's rate limits are counted over 15 minute windows
+    public static final int DEFAULT_MAX_CONNECTIONS = 10;
+    public static final long DEFAULT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    // How long to wait for more keyword changes before refiltering
+    public static final long DEFAULT_REFILTER_DELAY_MILLIS = 500;
+
+    private final SourceFactory factory;
+    private final Listener listener;
+    private final Random random;
+    private final long windowMillis;
+    private final long refilterDelayMillis;
+    // When the most recent connections were made, used as a circular buffer
+    private final long[] connectionTimes;
+    private final ScheduledExecutorService executor;
+    private int nextConnection;
+    private int attempt;
+    private boolean running;
+    private boolean reconnectPending;
+    private StatusSource source;
+    // The latest keywords that haven't been applied yet
+    private String[] pendingKeyWords;
+    private ScheduledFuture<?> refilterTask;
+
+    public ReconnectSupervisor(SourceFactory factory, Listener listener) {
+        this(factory, listener, DEFAULT_MAX_CONNECTIONS, DEFAULT_WINDOW_MILLIS,
+                DEFAULT_REFILTER_DELAY_MILLIS, new Random());
+    }
+
+    /**
+     * @param maxConnections      The most connections that can be made within the window
+     * @param windowMillis        The length of the window
+     * @param refilterDelayMillis How long to wait for more keyword changes before refiltering
+     */
+    public ReconnectSupervisor(
+            SourceFactory factory,
+            Listener listener,
+            int maxConnections,
+            long windowMillis,
+            long refilterDelayMillis,
+            Random random) {
+
+        this.factory = factory;
+        this.listener = listener;
+        this.windowMillis = windowMillis;
+        this.refilterDelayMillis = refilterDelayMillis;
+        this.random = random;
+        this.connectionTimes = new long[maxConnections];
+        Arrays.fill(connectionTimes, Long.MIN_VALUE);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ReconnectSupervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        connect();
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+            executor.shutdownNow();
+        }
+        closeSource();
+    }
+
+    /**
+     * Should be called once the source is connected so the next
+     * failure starts backing off from the shortest delay again
+     */
+    public synchronized void onConnected() {
+        attempt = 0;
+    }
+
+    /**
+     * Should be called with every error the source reports
+     */
+    public synchronized void onError(Exception error) {
+        // twitter4j can report the same failure more than once
+        // so anything after the first one is ignored
+        if (!running || reconnectPending) return;
+        Failure failure = Failure.classify(error);
+        if (!failure.isRetryable()) {
+            running = false;
+            executor.execute(this::closeSource);
+            executor.shutdown();
+            listener.onGaveUp(failure, error);
+            return;
+        }
+        long delayMillis = Math.max(backoff(failure, attempt), budgetDelay(System.currentTimeMillis()));
+        attempt++;
+        reconnectPending = true;
+        listener.onReconnecting(failure, delayMillis, attempt);
+        // The error is usually reported on the source's own thread
+        // so it's closed from ours to make sure it can shut down
+        executor.execute(this::closeSource);
+        executor.schedule(this::reconnect, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Switches the stream to new keywords. The change is applied once no other
+     * change has been made for a short while, so typing out a few keywords in a
+     * row only costs one connection.
+     */
+    @Override
+    public synchronized void refilter(String[] keyWords) {
+        if (!running) return;
+        pendingKeyWords = keyWords.clone();
+        if (refilterTask != null) refilterTask.cancel(false);
+        refilterTask = executor.schedule(this::applyKeyWords, refilterDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void applyKeyWords() {
+        String[] keyWords;
+        StatusSource current;
+        synchronized (this) {
+            if (!running || pendingKeyWords == null) return;
+            // While a reconnect is pending there's no source, the
+            // next one is created with the new keywords anyway
+            current = source;
+            if (current != null) {
+                // Refiltering is a new connection so it has to fit in the budget too
+                long delayMillis = budgetDelay(System.currentTimeMillis());
+                if (delayMillis > 0) {
+                    refilterTask = executor.schedule(this::applyKeyWords, delayMillis, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                if (current instanceof FilterableSource) recordConnection();
+            }
+            keyWords = pendingKeyWords;
+            pendingKeyWords = null;
+            refilterTask = null;
+        }
+        listener.onRefilter(keyWords);
+        if (current == null) return;
+        // Like shutting down, refiltering can wait on the source's thread
+        if (current instanceof FilterableSource) {
+            ((FilterableSource) current).refilter(keyWords);
+        } else {
+            // Sources that can't change their keywords are replaced
+            closeSource();
+            reconnect();
+        }
+    }
+
+    private synchronized void reconnect() {
+        reconnectPending = false;
+        if (running) connect();
+    }
+
+    private void connect() {
+        recordConnection();
+        source = factory.create();
+        source.start();
+    }
+
+    private void recordConnection() {
+        connectionTimes[nextConnection] = System.currentTimeMillis();
+        nextConnection = (nextConnection + 1) % connectionTimes.length;
+    }
+
+    private void closeSource() {
+        StatusSource closing;
+        synchronized (this) {
+            closing = source;
+            source = null;
+        }
+        // Shutting down can wait on the source's thread, which might be busy
+        // reporting an error to us, so we can't hold the lock while it does
+        if (closing != null) closing.shutdown();
+    }
+
+    /**
+     * A random delay between half and all of the failure's base delay doubled
+     * for each previous attempt. Always waiting at least half keeps a run of
+     * failures from retrying right away just because of the jitter.
+     */
+    long backoff(Failure failure, int attempt) {
+        long max = failure.baseDelayMillis << Math.min(attempt, 20);
+        if (max <= 0 || max > failure.maxDelayMillis) max = failure.maxDelayMillis;
+        long half = max / 2;
+        return half + (long) (random.nextDouble() * (max - half));
+    }
+
+    /**
+     * How long until another connection can be made without going over budget
+     */
+    long budgetDelay(long now) {
+        // The next slot holds the oldest connection. Until it leaves
+        // the window, every slot is a connection inside the window.
+        long oldest = connectionTimes[nextConnection];
+        if (oldest == Long.MIN_VALUE) return 0;
+        return Math.max(0, oldest + windowMillis - now);
+    }
+}
@@ -0,0 +1,144 @@
+package com.camtech.android.tweetbot.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import twitter4j.RawStreamListener;
+
+/**
+ * Plays back a recorded stream so the app can be run without a connection
+ * to Twitter. The file has one raw message per line, exactly as the streaming
+ * API sent them, and can be gzipped.
+ * <p>
+ * Messages are spaced out using their "timestamp_ms" field so bursts are
+ * reproduced the way they were recorded. Messages without one are sent
+ * right away.
+ */
+public final class ReplaySource implements StatusSource {
+
+    /**
+     * Sends messages as fast as the listener takes them
+     */
+    public static final double MAX_SPEED = 0;
+
+    private static final String TIMESTAMP_KEY = "\"timestamp_ms\":\"";
+
+    private final File file;
+    private final double speed;
+    private final RawStreamListener listener;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicLong messageCount = new AtomicLong();
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param file  The recorded stream
+     * @param speed How many times faster than real time the messages are sent, i.e. 2
+     *              for double speed. Use {@link #MAX_SPEED} to send them without waiting.
+     */
+    public ReplaySource(File file, double speed, RawStreamListener listener) {
+        this.file = file;
+        this.speed = speed;
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (thread != null) throw new IllegalStateException("Replay already started");
+        running = true;
+        thread = new Thread(this::replay, "ReplaySource");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+
+    /**
+     * Waits for the whole file to be sent
+     *
+     * @return false if the timeout passed first
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * Returns the number of messages sent to the listener so far
+     */
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    private void replay() {
+        try (BufferedReader reader = open(file)) {
+            long firstTimestamp = -1;
+            long startNanos = System.nanoTime();
+            String line;
+            while (running && (line = reader.readLine()) != null) {
+                // The stream sends blank lines to keep the connection alive
+                if (line.isEmpty()) continue;
+                if (speed > 0) {
+                    long timestamp = readTimestamp(line);
+                    if (timestamp >= 0) {
+                        if (firstTimestamp < 0) firstTimestamp = timestamp;
+                        long dueNanos = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(timestamp - firstTimestamp) / speed);
+                        long waitNanos = dueNanos - System.nanoTime();
+                        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    }
+                }
+                listener.onMessage(line);
+                messageCount.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            // Shut down while waiting for the next message
+        } catch (IOException e) {
+            if (running) listener.onException(e);
+        } finally {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Opens the file, unzipping it if it starts with the gzip header
+     */
+    private static BufferedReader open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        in.mark(2);
+        int magic = in.read() | (in.read() << 8);
+        in.reset();
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+            in = new GZIPInputStream(in);
+        }
+        return new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    }
+
+    /**
+     * @return The time the message was sent in milliseconds, or -1 if it doesn't have one
+     */
+    static long readTimestamp(String json) {
+        int start = json.lastIndexOf(TIMESTAMP_KEY);
+        if (start < 0) return -1;
+        start += TIMESTAMP_KEY.length();
+        long value = 0;
+        int i = start;
+        char c;
+        while (i < json.length() && (c = json.charAt(i)) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            i++;
+        }
+        return i == start ? -1 : value;
+    }
+}
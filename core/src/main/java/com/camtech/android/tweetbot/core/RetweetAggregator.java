@@ -0,0 +1,129 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps count of how many times each original tweet has been retweeted and
+ * how fast. When something goes viral, the stream can send hundreds of
+ * retweets of it in a minute and they'd all show the same text, so the feed
+ * only shows the first one and keeps its counter up to date instead.
+ * <p>
+ * Only a limited number of originals are tracked. When the limit is reached
+ * the one that went the longest without being retweeted is dropped, so the
+ * originals that are still being retweeted stay. If a dropped original comes
+ * back, it starts over as a new group.
+ * <p>
+ * This isn't thread safe. The {@link StreamProcessor} only uses it from the
+ * thread that sends out batches.
+ */
+public final class RetweetAggregator {
+
+    public static final int DEFAULT_CAPACITY = 500;
+    // The rate is a count that decays with this time constant, which makes
+    // it an estimate of how many retweets came in over the last minute
+    private static final double TIME_CONSTANT_MILLIS = 60_000;
+
+    /**
+     * How an original tweet stood at a point in time
+     */
+    public static final class Group {
+        private final long retweetedId;
+        private final long count;
+        private final double perMinute;
+
+        Group(long retweetedId, long count, double perMinute) {
+            this.retweetedId = retweetedId;
+            this.count = count;
+            this.perMinute = perMinute;
+        }
+
+        /**
+         * Returns the id of the original tweet
+         */
+        public long getRetweetedId() {
+            return retweetedId;
+        }
+
+        /**
+         * Returns the number of retweets seen since the original started being tracked
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public double getPerMinute() {
+            return perMinute;
+        }
+    }
+
+    private static final class Original {
+        long count;
+        double rate;
+        long lastRetweet;
+    }
+
+    private final Map<Long, Original> originals;
+
+    public RetweetAggregator() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The most originals tracked at once
+     */
+    public RetweetAggregator(int capacity) {
+        // Access order puts the original retweeted longest ago first
+        originals = new LinkedHashMap<Long, Original>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Original> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Counts a retweet of the given original
+     *
+     * @param now The current time in milliseconds
+     * @return true if this is the first retweet of the original being tracked
+     */
+    public boolean add(long retweetedId, long now) {
+        Original original = originals.get(retweetedId);
+        boolean first = original == null;
+        if (first) {
+            original = new Original();
+            original.lastRetweet = now;
+            originals.put(retweetedId, original);
+        }
+        original.rate = decay(original, now) + 1;
+        original.count++;
+        original.lastRetweet = now;
+        return first;
+    }
+
+    /**
+     * Returns how the original stands now or null if it isn't being tracked
+     */
+    public Group get(long retweetedId, long now) {
+        Original original = originals.get(retweetedId);
+        if (original == null) return null;
+        return new Group(retweetedId, original.count, decay(original, now) * 60_000 / TIME_CONSTANT_MILLIS);
+    }
+
+    /**
+     * Returns the number of originals being tracked
+     */
+    public int size() {
+        return originals.size();
+    }
+
+    public void clear() {
+        originals.clear();
+    }
+
+    private static double decay(Original original, long now) {
+        long elapsed = Math.max(0, now - original.lastRetweet);
+        return original.rate * Math.exp(-elapsed / TIME_CONSTANT_MILLIS);
+    }
+}
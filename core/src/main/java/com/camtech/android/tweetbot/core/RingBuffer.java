@@ -0,0 +1,138 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue used to hand statuses off from the stream thread
+ * to the threads that actually process them. The stream thread is the only
+ * producer but any number of threads can consume from it.
+ * <p>
+ * Each slot keeps a sequence number so producers and consumers never have to
+ * lock to know if a slot is ready (this is Dmitry Vyukov's bounded queue).
+ * When the queue is full, the {@link OverflowPolicy} decides whether the new
+ * item or the oldest item gets dropped.
+ */
+public final class RingBuffer<T> {
+
+    public enum OverflowPolicy {
+        /**
+         * Keep what's already queued and throw away the item being offered
+         */
+        DROP_NEWEST,
+        /**
+         * Throw away the oldest queued item to make room for the item being offered
+         */
+        DROP_OLDEST
+    }
+
+    private final AtomicReferenceArray<T> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity The max number of items, rounded up to the next power of 2
+     * @param policy   What to do when an item is offered to a full queue
+     */
+    public RingBuffer(int capacity, OverflowPolicy policy) {
+        if (capacity < 2) throw new IllegalArgumentException("Capacity must be at least 2");
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.policy = policy;
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    /**
+     * Adds an item to the queue. If the queue is full, either this item
+     * or the oldest item is dropped depending on the overflow policy.
+     *
+     * @return false if the item was dropped
+     */
+    public boolean offer(T item) {
+        while (true) {
+            if (tryOffer(item)) return true;
+            dropped.incrementAndGet();
+            if (policy == OverflowPolicy.DROP_NEWEST) return false;
+            // Make room by throwing away the oldest item then try again
+            poll();
+        }
+    }
+
+    private boolean tryOffer(T item) {
+        while (true) {
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(index, item);
+                    // Publish the item to the consumers
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // The slot hasn't been consumed yet so the queue is full
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest item from the queue
+     *
+     * @return the item or null if the queue is empty
+     */
+    public T poll() {
+        while (true) {
+            long pos = head.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    T item = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    // Hand the slot back to the producer for the next lap
+                    sequences.lazySet(index, pos + mask + 1);
+                    return item;
+                }
+            } else if (diff < 0) {
+                // Nothing has been published to this slot yet
+                return null;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the approximate number of items waiting to be consumed
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the total number of items dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
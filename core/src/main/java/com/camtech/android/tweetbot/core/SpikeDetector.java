@@ -0,0 +1,187 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notices when a keyword suddenly starts occurring a lot more than usual.
+ * <p>
+ * Each keyword has two rates that decay exponentially, a short one that follows
+ * the last minute or so and a long one that follows the last half hour, which
+ * is what the keyword usually does. The rates aren't updated for every tweet.
+ * The tweets are already counted in the {@link CounterStore}, so every few
+ * seconds the detector takes whatever each count went up by and folds it into
+ * both rates. That's a few multiplications per keyword no matter how many
+ * tweets came in, and nothing is allocated.
+ * <p>
+ * A spike is reported when the short rate goes over a set number of occurrences
+ * a minute, or over a set multiple of the long rate. Once reported, a keyword
+ * isn't reported again until its short rate has dropped back below half of what
+ * set it off and the cool down has passed, so a spike that lasts an hour is only
+ * reported once.
+ */
+public final class SpikeDetector {
+
+    public interface Listener {
+        /**
+         * Called from the detector's thread
+         *
+         * @param perMinute      How many times a minute the keyword is occurring now
+         * @param usualPerMinute How many times a minute it usually occurs
+         */
+        void onSpike(String keyWord, double perMinute, double usualPerMinute);
+    }
+
+    public static final long TICK_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    public static final long SHORT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    public static final long LONG_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    public static final long DEFAULT_COOL_DOWN_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // The long rate means nothing until it's seen a good part of its window
+    private static final long WARM_UP_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // Going from 0.1 to 0.5 a minute is a big ratio but not a spike
+    private static final double MIN_RATIO_PER_MINUTE = 1;
+
+    private static final class Rates {
+        long lastCount;
+        long lastTick;
+        long firstTick;
+        double shortRate;
+        double longRate;
+        // What the short rate has to drop below before the keyword can be reported again
+        double reArmBelow;
+        long lastSpike;
+    }
+
+    private final CounterStore counterStore;
+    private final Listener listener;
+    private final long coolDownMillis;
+    private final Map<String, Rates> rates = new HashMap<>();
+    // 0 turns either check off
+    private volatile double threshold;
+    private volatile double ratio;
+    private ScheduledExecutorService executor;
+
+    public SpikeDetector(CounterStore counterStore, Listener listener) {
+        this(counterStore, listener, DEFAULT_COOL_DOWN_MILLIS);
+    }
+
+    /**
+     * @param coolDownMillis The least amount of time between two spikes of the same keyword
+     */
+    public SpikeDetector(CounterStore counterStore, Listener listener, long coolDownMillis) {
+        this.counterStore = counterStore;
+        this.listener = listener;
+        this.coolDownMillis = coolDownMillis;
+    }
+
+    /**
+     * @param perMinute A spike is reported when a keyword occurs more than this
+     *                  many times a minute, 0 turns this off
+     */
+    public void setThreshold(double perMinute) {
+        threshold = perMinute;
+    }
+
+    /**
+     * @param ratio A spike is reported when a keyword occurs this many times
+     *              more often than it usually does, 0 turns this off
+     */
+    public void setRatio(double ratio) {
+        this.ratio = ratio;
+    }
+
+    public synchronized void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SpikeDetector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(
+                () -> tick(System.currentTimeMillis()), TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (executor == null) return;
+        executor.shutdownNow();
+        executor = null;
+        rates.clear();
+    }
+
+    /**
+     * Returns how many times a minute the keyword is occurring now or -1 if it isn't being followed
+     */
+    public synchronized double getShortRate(String keyWord) {
+        Rates keyWordRates = rates.get(keyWord);
+        return keyWordRates != null ? keyWordRates.shortRate : -1;
+    }
+
+    /**
+     * Returns how many times a minute the keyword usually occurs or -1 if it isn't being followed
+     */
+    public synchronized double getLongRate(String keyWord) {
+        Rates keyWordRates = rates.get(keyWord);
+        return keyWordRates != null ? keyWordRates.longRate : -1;
+    }
+
+    /**
+     * Folds the counts since the last tick into the rates and reports any
+     * spikes. This happens on its own every {@link #TICK_MILLIS}.
+     */
+    public synchronized void tick(long now) {
+        Map<String, Long> counts = counterStore.snapshot();
+        // Keywords that aren't tracked anymore
+        Iterator<String> iterator = rates.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!counts.containsKey(iterator.next())) iterator.remove();
+        }
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            Rates keyWordRates = rates.get(entry.getKey());
+            if (keyWordRates == null) {
+                // The first tick only tells us where the count starts from
+                keyWordRates = new Rates();
+                keyWordRates.lastCount = entry.getValue();
+                keyWordRates.lastTick = now;
+                keyWordRates.firstTick = now;
+                rates.put(entry.getKey(), keyWordRates);
+                continue;
+            }
+            update(keyWordRates, entry.getValue(), now);
+            check(entry.getKey(), keyWordRates, now);
+        }
+    }
+
+    private static void update(Rates rates, long count, long now) {
+        long elapsed = now - rates.lastTick;
+        if (elapsed <= 0) return;
+        double perMinute = Math.max(0, count - rates.lastCount) * (double) TimeUnit.MINUTES.toMillis(1) / elapsed;
+        // Ticks can be late so how much each rate moves depends on the time that actually passed
+        rates.shortRate += (1 - Math.exp(-(double) elapsed / SHORT_WINDOW_MILLIS)) * (perMinute - rates.shortRate);
+        rates.longRate += (1 - Math.exp(-(double) elapsed / LONG_WINDOW_MILLIS)) * (perMinute - rates.longRate);
+        rates.lastCount = count;
+        rates.lastTick = now;
+    }
+
+    private void check(String keyWord, Rates rates, long now) {
+        if (rates.reArmBelow > 0) {
+            if (rates.shortRate >= rates.reArmBelow || now - rates.lastSpike < coolDownMillis) return;
+            rates.reArmBelow = 0;
+        }
+        double threshold = this.threshold;
+        double ratio = this.ratio;
+        // The lowest short rate that counts as a spike right now
+        double trigger = Double.MAX_VALUE;
+        if (threshold > 0) trigger = threshold;
+        if (ratio > 0 && now - rates.firstTick >= WARM_UP_MILLIS) {
+            trigger = Math.min(trigger, Math.max(MIN_RATIO_PER_MINUTE, rates.longRate * ratio));
+        }
+        if (rates.shortRate < trigger) return;
+
+        rates.reArmBelow = trigger / 2;
+        rates.lastSpike = now;
+        listener.onSpike(keyWord, rates.shortRate, rates.longRate);
+    }
+}
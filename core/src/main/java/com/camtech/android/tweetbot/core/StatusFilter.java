@@ -0,0 +1,76 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed chain of rules a tweet has to pass before it's counted and shown.
+ * The chain is built once from the user's settings and only rebuilt when a
+ * setting changes, so checking a tweet never has to look anything up.
+ * <p>
+ * Rules check the {@link StatusRecord} straight from parsing, so a tweet that's
+ * rejected is never cleaned up or turned into a {@link com.camtech.android.tweetbot.models.Tweet}.
+ * <p>
+ * New kinds of filters can be added by implementing {@link Rule} and
+ * adding them through {@link Builder#add(Rule)}.
+ */
+public final class StatusFilter {
+
+    public interface Rule {
+        /**
+         * @param record Reused for the next status, so it mustn't be kept
+         * @return true if the tweet should be kept
+         */
+        boolean accept(StatusRecord record);
+    }
+
+    /**
+     * A filter that lets everything through
+     */
+    public static final StatusFilter ACCEPT_ALL = new Builder().build();
+
+    private final Rule[] rules;
+
+    private StatusFilter(List<Rule> rules) {
+        this.rules = rules.toArray(new Rule[rules.size()]);
+    }
+
+    /**
+     * Runs the tweet through every rule, stopping at the first one that rejects it
+     */
+    public boolean accept(StatusRecord record) {
+        for (Rule rule : rules) {
+            if (!rule.accept(record)) return false;
+        }
+        return true;
+    }
+
+    public static final class Builder {
+        private final List<Rule> rules = new ArrayList<>();
+
+        /**
+         * Rejects any tweet that's a retweet
+         */
+        public Builder excludeRetweets() {
+            return add(record -> !record.isRetweet);
+        }
+
+        /**
+         * Rejects any tweet that Twitter didn't mark as being in the given language
+         *
+         * @param lang A BCP 47 language code, i.e. "en"
+         */
+        public Builder language(String lang) {
+            return add(record -> lang.equals(record.lang));
+        }
+
+        public Builder add(Rule rule) {
+            rules.add(rule);
+            return this;
+        }
+
+        public StatusFilter build() {
+            return new StatusFilter(rules);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.camtech.android.tweetbot.core;
+
+/**
+ * The handful of status fields the app actually uses. Both the twitter4j
+ * path and {@link TweetJsonParser} fill one of these in so everything after
+ * parsing only has to deal with a single shape.
+ * <p>
+ * Records are reused by the thread that owns them so they aren't thread safe.
+ */
+public final class StatusRecord {
+    public long id;
+    public long createdAt;
+    public long userId;
+    public String screenName;
+    public String name;
+    public String userDescription;
+    public String userProfilePic;
+    /**
+     * The text of the status, or the full text of the original status for retweets
+     */
+    public String text;
+    public boolean isRetweet;
+    /**
+     * The id of the original status for retweets, 0 otherwise
+     */
+    public long retweetedId;
+    public String lang;
+
+    public void clear() {
+        id = 0;
+        createdAt = 0;
+        userId = 0;
+        screenName = null;
+        name = null;
+        userDescription = null;
+        userProfilePic = null;
+        text = null;
+        isRetweet = false;
+        retweetedId = 0;
+        lang = null;
+    }
+}
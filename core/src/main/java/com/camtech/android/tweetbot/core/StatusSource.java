@@ -0,0 +1,20 @@
+package com.camtech.android.tweetbot.core;
+
+/**
+ * Somewhere statuses come from. Usually this is the live stream
+ * but statuses can also be replayed from a file, see {@link ReplaySource}.
+ * Each source delivers to the listener it was given when it was created.
+ */
+public interface StatusSource {
+
+    /**
+     * Starts delivering statuses. This shouldn't block.
+     */
+    void start();
+
+    /**
+     * Stops delivering statuses and releases anything the source holds onto.
+     * This shouldn't block either.
+     */
+    void shutdown();
+}
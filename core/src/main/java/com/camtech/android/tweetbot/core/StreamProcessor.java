@@ -0,0 +1,638 @@
+package com.camtech.android.tweetbot.core;
+
+import com.camtech.android.tweetbot.models.Tweet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import twitter4j.JSONException;
+import twitter4j.JSONObject;
+import twitter4j.Status;
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+
+/**
+ * Turns messages from the stream into counted, filtered {@link Tweet}s.
+ * This is everything the app does with a status that doesn't need Android,
+ * so it can be run and benchmarked on a plain JVM.
+ * <p>
+ * Messages are either twitter4j Statuses or raw JSON strings. {@link #offer(Object)}
+ * only queues them, a small {@link WorkerPool} does the matching, filtering and
+ * counting, and the tweets are handed to the {@link Callback} in batches.
+ * The occurrences of each keyword are counted in a {@link CounterStore} and
+ * the users who posted them in {@link AuthorSketches}.
+ * <p>
+ * Retweets still count as occurrences, but only the first retweet of each
+ * original is sent out. After that, the batches carry the original's
+ * updated retweet count from a {@link RetweetAggregator} instead.
+ * <p>
+ * The hashtags, mentions and pairs of words in the tweets are counted in
+ * {@link TrendingTerms} and the top ones are sent out every couple of seconds.
+ * <p>
+ * The keywords can be replaced with {@link #setKeyWords(String[], long[])} while
+ * statuses are flowing. Keywords that are in both the old and the new set keep
+ * counting from where they were. The ones that were dropped are taken out of the
+ * counter store and the author sketches once no worker is counting into them anymore.
+ * <p>
+ * When Twitter warns that we're reading too slowly, the processor goes into a
+ * light mode for a while. Tweets are still counted but they aren't sent out,
+ * only the counts are, about once a second. That leaves more time for reading
+ * the stream so Twitter doesn't disconnect us.
+ * <p>
+ * What the processor does is recorded in {@link Metrics#getDefault()}.
+ */
+public class StreamProcessor {
+
+    public interface Callback {
+        /**
+         * Called with every tweet that passed the filter since the last batch,
+         * except for retweets of an original that was already sent out
+         *
+         * @param retweets The originals that were retweeted again since the last batch
+         * @param keyWords The keywords being tracked when the batch was sent
+         * @param counts   The number of occurrences of each keyword, in the same order as the keywords
+         */
+        void onBatch(List<Tweet> tweets, List<RetweetAggregator.Group> retweets, String[] keyWords, long[] counts);
+
+        /**
+         * Called when Twitter warns that its queue of statuses for us is filling
+         * up. The processor is in light mode by the time this is called.
+         *
+         * @param percentFull How full Twitter's queue is. At 100% the stream is disconnected.
+         */
+        void onFallingBehind(String code, String message, int percentFull);
+
+        /**
+         * Called every {@link #TRENDING_INTERVAL_MILLIS} with the terms that
+         * came up the most lately, most first
+         */
+        void onTrending(List<HeavyHitters.Item> terms);
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_NUM_WORKERS = 2;
+    // Twitter sends a stall warning about every 5 minutes for as long as we're behind
+    public static final long LIGHT_MODE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // How often the counts are sent while in light mode
+    private static final long LIGHT_MODE_INTERVAL_MILLIS = 1_000;
+    public static final long TRENDING_INTERVAL_MILLIS = 2_000;
+    public static final int NUM_TRENDING_TERMS = 20;
+
+    /**
+     * Every message handed to the processor
+     */
+    public static final String METRIC_RECEIVED = "stream.received";
+    /**
+     * Tweets that matched a keyword and passed the filter
+     */
+    public static final String METRIC_ACCEPTED = "stream.accepted";
+    public static final String METRIC_PARSE_ERRORS = "stream.parse_errors";
+    /**
+     * How long twitter4j's thread spends handing over a message
+     */
+    public static final String METRIC_ON_STATUS = "stream.on_status";
+    /**
+     * How long a worker spends on a message
+     */
+    public static final String METRIC_PROCESS = "stream.process";
+    private static final String[] GAUGES = {
+            "stream.queue_depth",
+            "stream.queue_fill_percent",
+            "stream.dropped",
+            "stream.undelivered",
+            "stream.stall_warnings",
+            "stream.stall_percent_full",
+            "stream.light_mode"
+    };
+
+    private final Callback callback;
+    private final CounterStore counterStore;
+    private final AuthorSketches authorSketches;
+    private volatile KeywordSet keywordSet;
+    // Sets that were replaced but that a worker might still be counting into.
+    // Only touched while holding the processor's lock.
+    private final List<KeywordSet> retiring = new ArrayList<>();
+    // The last count of each keyword that was taken out of the counter store,
+    // in case it's added back before its count has been read from wherever it was saved
+    private final Map<String, Long> retiredCounts = new HashMap<>();
+    // Each worker thread gets its own scratch objects so they can be reused between statuses
+    private final ThreadLocal<WorkerState> workerState;
+    // Holds both Statuses and raw JSON messages
+    private final RingBuffer<Object> queue;
+    private final WorkerPool<Object> workers;
+    private final Batcher<Tweet> batcher;
+    // Only used from the batcher's thread
+    private final RetweetAggregator retweets = new RetweetAggregator();
+    private final LinkedHashSet<Long> retweetedIds = new LinkedHashSet<>();
+    private long nextTrending;
+    private final TrendingTerms trendingTerms = new TrendingTerms();
+    private volatile StatusFilter filter = StatusFilter.ACCEPT_ALL;
+    // 0 when not in light mode
+    private volatile long lightModeUntil;
+    private final AtomicLong nextLightModeBatch = new AtomicLong();
+    private final AtomicLong stallWarnings = new AtomicLong();
+    private volatile int stallPercentFull;
+    // The track count from Twitter is a running total for the current
+    // connection so the last one is kept to work out how much it went up
+    private final Object trackLimitLock = new Object();
+    private long undeliveredCount;
+    private int lastTrackLimit;
+    private final Metrics.Counter received;
+    private final Metrics.Counter accepted;
+    private final Metrics.Counter parseErrors;
+    private final Metrics.Histogram onStatusLatency;
+    private final Metrics.Histogram processLatency;
+    private final Metrics.Gauge[] gauges;
+
+    public StreamProcessor(String[] keyWords, long[] initialCounts, Callback callback) {
+        this(keyWords, initialCounts, new CounterStore(), new AuthorSketches(), DEFAULT_QUEUE_CAPACITY,
+                RingBuffer.OverflowPolicy.DROP_OLDEST, DEFAULT_NUM_WORKERS, callback);
+    }
+
+    /**
+     * @param initialCounts  The number of occurrences each keyword starts from
+     *                       if it isn't in the counter store yet
+     * @param counterStore   Where the occurrences are counted
+     * @param authorSketches Where the users posting the tweets of each keyword are counted
+     * @param queueCapacity  The max number of statuses waiting to be processed
+     * @param overflowPolicy Which status to drop when the queue is full
+     * @param numWorkers     The number of threads processing statuses
+     */
+    public StreamProcessor(
+            String[] keyWords,
+            long[] initialCounts,
+            CounterStore counterStore,
+            AuthorSketches authorSketches,
+            int queueCapacity,
+            RingBuffer.OverflowPolicy overflowPolicy,
+            int numWorkers,
+            Callback callback) {
+
+        this.callback = callback;
+        this.counterStore = counterStore;
+        this.authorSketches = authorSketches;
+        keywordSet = new KeywordSet(keyWords, initialCounts, counterStore, authorSketches);
+        workerState = new ThreadLocal<WorkerState>() {
+            @Override
+            protected WorkerState initialValue() {
+                return new WorkerState();
+            }
+        };
+        queue = new RingBuffer<>(queueCapacity, overflowPolicy);
+        // Tweets and counts are sent out in batches instead of one at a time
+        batcher = new Batcher<>("StreamBatcher", this::postBatch);
+        workers = new WorkerPool<>("StreamWorker", numWorkers, queue, this::process);
+
+        Metrics metrics = Metrics.getDefault();
+        received = metrics.counter(METRIC_RECEIVED);
+        accepted = metrics.counter(METRIC_ACCEPTED);
+        parseErrors = metrics.counter(METRIC_PARSE_ERRORS);
+        onStatusLatency = metrics.histogram(METRIC_ON_STATUS);
+        processLatency = metrics.histogram(METRIC_PROCESS);
+        // Same order as GAUGES
+        gauges = new Metrics.Gauge[]{
+                this::getQueueDepth,
+                this::getQueueFillPercent,
+                this::getDroppedCount,
+                this::getUndeliveredCount,
+                this::getStallWarningCount,
+                this::getStallPercentFull,
+                () -> isLightMode() ? 1 : 0
+        };
+        for (int i = 0; i < GAUGES.length; i++) metrics.gauge(GAUGES[i], gauges[i]);
+        workers.start();
+    }
+
+    /**
+     * Queues a Status or a raw JSON message to be processed. This is
+     * meant to be called from twitter4j's thread so it does no other work.
+     */
+    public void offer(Object message) {
+        long start = System.nanoTime();
+        received.increment();
+        queue.offer(message);
+        workers.signal();
+        onStatusLatency.recordSince(start);
+    }
+
+    /**
+     * Replaces the filter tweets have to pass before they're counted
+     */
+    public void setFilter(StatusFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Replaces the keywords being tracked. A keyword that's already in the
+     * counter store keeps its counter, so its initial count is ignored. Statuses
+     * being processed while the keywords change are matched against
+     * whichever set the worker picked up first.
+     * <p>
+     * The keywords that aren't in the new set are saved and taken out of the counter
+     * store and the author sketches, but only once the workers are done with the old
+     * set. Taking them out any earlier would lose what the workers still count into them.
+     *
+     * @param initialCounts The number of occurrences each new keyword starts from
+     */
+    public synchronized void setKeyWords(String[] keyWords, long[] initialCounts) {
+        long[] counts = initialCounts.clone();
+        for (int i = 0; i < keyWords.length; i++) {
+            Long retired = retiredCounts.remove(keyWords[i]);
+            if (retired != null) counts[i] = Math.max(counts[i], retired);
+        }
+        KeywordSet old = keywordSet;
+        keywordSet = new KeywordSet(keyWords, counts, counterStore, authorSketches);
+        retiring.add(old);
+        if (old.users.get() == 0) retire(old);
+    }
+
+    public String[] getKeyWords() {
+        return keywordSet.keyWords.clone();
+    }
+
+    /**
+     * Returns the number of occurrences of each keyword, in the same order as {@link #getKeyWords()}
+     */
+    public long[] getCounts() {
+        return keywordSet.counts();
+    }
+
+    /**
+     * Returns the terms that came up the most lately, most first
+     */
+    public List<HeavyHitters.Item> getTrendingTerms(int limit) {
+        return trendingTerms.top(limit);
+    }
+
+    /**
+     * Returns the number of statuses waiting to be processed
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of statuses dropped because the workers couldn't keep up
+     */
+    public long getDroppedCount() {
+        return queue.getDroppedCount();
+    }
+
+    /**
+     * Returns how full our own queue is, from 0 to 100
+     */
+    public int getQueueFillPercent() {
+        return queue.size() * 100 / queue.capacity();
+    }
+
+    /**
+     * Returns how full Twitter's queue was at the last stall warning, from 0 to 100
+     */
+    public int getStallPercentFull() {
+        return stallPercentFull;
+    }
+
+    public long getStallWarningCount() {
+        return stallWarnings.get();
+    }
+
+    /**
+     * Returns the number of matching statuses Twitter didn't send because
+     * of track limits, across every connection this processor has seen
+     */
+    public long getUndeliveredCount() {
+        synchronized (trackLimitLock) {
+            return undeliveredCount;
+        }
+    }
+
+    /**
+     * Returns true if tweets are only being counted and not sent out
+     */
+    public boolean isLightMode() {
+        long until = lightModeUntil;
+        return until != 0 && System.currentTimeMillis() < until;
+    }
+
+    /**
+     * Records a track limitation notice, see {@link twitter4j.StatusListener#onTrackLimitationNotice(int)}
+     *
+     * @param track The number of undelivered statuses since the connection was opened
+     */
+    public void reportTrackLimitation(int track) {
+        synchronized (trackLimitLock) {
+            // A smaller number than last time means this is a new connection.
+            // Notices are rare enough that workers handling them out of
+            // order isn't worth worrying about.
+            undeliveredCount += track >= lastTrackLimit ? track - lastTrackLimit : track;
+            lastTrackLimit = track;
+        }
+    }
+
+    /**
+     * Records a stall warning and goes into light mode,
+     * see {@link twitter4j.StatusListener#onStallWarning(twitter4j.StallWarning)}
+     */
+    public void reportStallWarning(String code, String message, int percentFull) {
+        stallWarnings.incrementAndGet();
+        stallPercentFull = percentFull;
+        lightModeUntil = System.currentTimeMillis() + LIGHT_MODE_MILLIS;
+        callback.onFallingBehind(code, message, percentFull);
+    }
+
+    /**
+     * Stops the worker threads, waiting for the statuses they're on. Any status
+     * still waiting in the queue is discarded.
+     */
+    public void shutdown() {
+        workers.shutdown();
+        batcher.shutdown();
+        synchronized (this) {
+            // Normally the workers retire these as they let go of them, this
+            // covers the ones that were used from a thread outside the pool
+            for (KeywordSet set : new ArrayList<>(retiring)) {
+                if (set.users.get() == 0) retire(set);
+            }
+        }
+        Metrics metrics = Metrics.getDefault();
+        for (int i = 0; i < GAUGES.length; i++) metrics.removeGauge(GAUGES[i], gauges[i]);
+    }
+
+    /**
+     * Processes a message on the calling thread instead of queueing it.
+     * The workers use this, benchmarks can call it directly.
+     */
+    public void process(Object message) {
+        long start = System.nanoTime();
+        WorkerState state = workerState.get();
+        if (message instanceof Status) {
+            copyStatus((Status) message, state.record);
+            processRecord(state.record, state);
+        } else if (state.parser.parse((String) message, state.record)) {
+            processRecord(state.record, state);
+        } else {
+            processUnknownMessage((String) message);
+        }
+        processLatency.recordSince(start);
+    }
+
+    /**
+     * Handles raw messages the {@link TweetJsonParser} didn't recognise by letting twitter4j parse them
+     */
+    private void processUnknownMessage(String json) {
+        try {
+            JSONObject object = new JSONObject(json);
+            if (object.has("limit")) {
+                reportTrackLimitation(object.getJSONObject("limit").getInt("track"));
+            } else if (object.has("warning")) {
+                JSONObject warning = object.getJSONObject("warning");
+                // twitter4j's JSONObject has no optString/optInt, and any of these can be missing
+                reportStallWarning(
+                        warning.has("code") ? warning.getString("code") : "",
+                        warning.has("message") ? warning.getString("message") : "",
+                        warning.has("percent_full") ? warning.getInt("percent_full") : 0);
+            } else if (object.has("text") && object.has("user")) {
+                WorkerState state = workerState.get();
+                copyStatus(TwitterObjectFactory.createStatus(json), state.record);
+                processRecord(state.record, state);
+            }
+            // Everything else (deletions, scrub_geo...) isn't used
+        } catch (JSONException | TwitterException e) {
+            parseErrors.increment();
+            e.printStackTrace();
+        }
+    }
+
+    private static void copyStatus(Status status, StatusRecord record) {
+        record.id = status.getId();
+        record.createdAt = status.getCreatedAt().getTime();
+        record.userId = status.getUser().getId();
+        record.screenName = status.getUser().getScreenName();
+        record.name = status.getUser().getName();
+        record.userDescription = status.getUser().getDescription();
+        record.userProfilePic = status.getUser().getBiggerProfileImageURL();
+        // Twitter returns truncated retweets so we have to make sure
+        //we get the entire text of the tweet
+        record.text = status.isRetweet()
+                ? status.getRetweetedStatus().getText()
+                : status.getText();
+        record.isRetweet = status.isRetweet();
+        record.retweetedId = status.isRetweet() ? status.getRetweetedStatus().getId() : 0;
+        record.lang = status.getLang();
+    }
+
+    private void processRecord(StatusRecord record, WorkerState state) {
+        // Checked first so the statuses that are filtered out cost as little as possible
+        if (!filter.accept(record)) return;
+
+        String message = record.text;
+        // Picked up once so the whole status is handled with the same keywords
+        KeywordSet set = acquireKeyWords();
+        String[] keyWords = set.keyWords;
+        int[] hits = state.hits(keyWords.length);
+        int numHits;
+        try {
+            // Find every keyword this status belongs to in one pass over the text
+            numHits = set.matcher.match(message, hits);
+            if (numHits == 0 && keyWords.length == 1) {
+                // Twitter also matches keywords against links and screen names
+                // so the text might not contain the keyword at all. When we're
+                // only tracking one word, the status can only belong to that word.
+                hits[0] = 0;
+                numHits = 1;
+            }
+            // The tweet is only shown once but it counts
+            // towards every keyword it contains
+            for (int i = 0; i < numHits; i++) {
+                set.counters[hits[i]].increment();
+                set.authors[hits[i]].add(record.userId);
+            }
+        } finally {
+            releaseKeyWords(set);
+        }
+        if (numHits == 0) return;
+        accepted.increment();
+
+        // The date is only formatted if the tweet is actually shown, but the text
+        // is cleaned up here, once for each tweet that's kept, so the card doesn't have to do it
+        TweetText cleaner = state.cleaner;
+        Tweet tweet = new Tweet(
+                record.createdAt,
+                record.screenName,
+                record.name,
+                record.userDescription,
+                record.userProfilePic,
+                cleaner.clean(message),
+                keyWords[hits[0]],
+                record.id,
+                record.isRetweet,
+                record.retweetedId,
+                record.lang,
+                cleaner.getSpans());
+
+        long until = lightModeUntil;
+        if (until != 0) {
+            long now = System.currentTimeMillis();
+            if (now < until) {
+                // Finding the terms is the most expensive thing left, so it's skipped too
+                postCounts(now);
+                return;
+            }
+        }
+        trendingTerms.add(message);
+        batcher.add(tweet);
+    }
+
+    /**
+     * Returns the current keywords, marked as in use until {@link #releaseKeyWords(KeywordSet)}
+     */
+    private KeywordSet acquireKeyWords() {
+        while (true) {
+            KeywordSet set = keywordSet;
+            set.users.incrementAndGet();
+            // If it was replaced in the meantime it might already be retired
+            if (set == keywordSet) return set;
+            releaseKeyWords(set);
+        }
+    }
+
+    private void releaseKeyWords(KeywordSet set) {
+        // The last worker done with a replaced set retires it
+        if (set.users.decrementAndGet() == 0 && set != keywordSet) retire(set);
+    }
+
+    /**
+     * Takes the keywords of a replaced set that nothing tracks anymore out of
+     * the counter store and the author sketches. Both the worker that finished
+     * with the set and {@link #setKeyWords(String[], long[])} can get here, only
+     * the first one does anything.
+     */
+    private synchronized void retire(KeywordSet set) {
+        if (!retiring.remove(set)) return;
+        for (String keyWord : set.keyWords) {
+            if (isTracked(keyWord)) continue;
+            // Nothing counts it anymore so this is its final count
+            long count = counterStore.get(keyWord);
+            if (count >= 0) retiredCounts.put(keyWord, count);
+            // The authors are saved along with the count
+            counterStore.remove(keyWord);
+            authorSketches.remove(keyWord);
+        }
+    }
+
+    /**
+     * Whether the keyword is in the current set or in a replaced set that's still being used.
+     * In the second case, it's retired along with that set once the workers are done.
+     */
+    private boolean isTracked(String keyWord) {
+        if (keywordSet.contains(keyWord)) return true;
+        for (KeywordSet set : retiring) {
+            if (set.contains(keyWord)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sends just the counts from a worker thread, at most once every interval
+     */
+    private void postCounts(long now) {
+        long next = nextLightModeBatch.get();
+        if (now < next || !nextLightModeBatch.compareAndSet(next, now + LIGHT_MODE_INTERVAL_MILLIS)) return;
+        KeywordSet set = keywordSet;
+        callback.onBatch(Collections.<Tweet>emptyList(), Collections.<RetweetAggregator.Group>emptyList(),
+                set.keyWords, set.counts());
+    }
+
+    private void postBatch(List<Tweet> tweets) {
+        long now = System.currentTimeMillis();
+        List<Tweet> shown = new ArrayList<>(tweets.size());
+        retweetedIds.clear();
+        for (Tweet tweet : tweets) {
+            if (!tweet.isRetweet() || retweets.add(tweet.getRetweetedId(), now)) {
+                shown.add(tweet);
+            }
+            if (tweet.isRetweet()) retweetedIds.add(tweet.getRetweetedId());
+        }
+        // Originals retweeted once so far don't need a counter yet
+        List<RetweetAggregator.Group> groups = new ArrayList<>(retweetedIds.size());
+        for (long id : retweetedIds) {
+            RetweetAggregator.Group group = retweets.get(id, now);
+            if (group != null && group.getCount() > 1) groups.add(group);
+        }
+        // The counts are read when the batch is sent so
+        // the callback always sees the latest values
+        KeywordSet set = keywordSet;
+        callback.onBatch(shown, groups, set.keyWords, set.counts());
+        if (now >= nextTrending) {
+            nextTrending = now + TRENDING_INTERVAL_MILLIS;
+            trendingTerms.halveIfDue(now);
+            callback.onTrending(trendingTerms.top(NUM_TRENDING_TERMS));
+        }
+    }
+
+    /**
+     * The keywords being tracked along with their matcher, counters and author sketches.
+     * It's never modified, changing the keywords swaps in a new set.
+     */
+    private static final class KeywordSet {
+        final String[] keyWords;
+        final KeywordMatcher matcher;
+        final CounterStore.Counter[] counters;
+        final HyperLogLog[] authors;
+        // The number of workers counting into this set right now
+        final AtomicInteger users = new AtomicInteger();
+
+        KeywordSet(String[] keyWords, long[] initialCounts, CounterStore counterStore, AuthorSketches authorSketches) {
+            this.keyWords = keyWords.clone();
+            matcher = new KeywordMatcher(keyWords);
+            counters = new CounterStore.Counter[keyWords.length];
+            authors = new HyperLogLog[keyWords.length];
+            for (int i = 0; i < keyWords.length; i++) {
+                // A keyword in both sets gets the same counter back, so
+                // increments made through the old set while it's being
+                // replaced aren't lost
+                counters[i] = counterStore.counter(keyWords[i], initialCounts[i]);
+                authors[i] = authorSketches.sketch(keyWords[i]);
+            }
+        }
+
+        boolean contains(String keyWord) {
+            for (String k : keyWords) {
+                if (k.equals(keyWord)) return true;
+            }
+            return false;
+        }
+
+        long[] counts() {
+            long[] counts = new long[counters.length];
+            for (int i = 0; i < counts.length; i++) counts[i] = counters[i].get();
+            return counts;
+        }
+    }
+
+    /**
+     * Objects a worker thread reuses for every status it processes
+     */
+    private static final class WorkerState {
+        final StatusRecord record = new StatusRecord();
+        final TweetJsonParser parser = new TweetJsonParser();
+        final TweetText cleaner = new TweetText();
+        // Holds the indices of the keywords matched by the current status
+        private int[] hits = new int[0];
+
+        /**
+         * Returns the hits array, growing it if there are more keywords than it can hold
+         */
+        int[] hits(int numKeyWords) {
+            if (hits.length < numKeyWords) hits = new int[numKeyWords];
+            return hits;
+        }
+    }
+}
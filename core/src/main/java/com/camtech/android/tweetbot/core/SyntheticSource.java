@@ -0,0 +1,317 @@
+package com.camtech.android.tweetbot.core;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import twitter4j.RawStreamListener;
+
+/**
+ * Makes up statuses at a fixed rate so the app can be load tested
+ * without a connection to Twitter. Each status is sent to the listener
+ * as raw JSON in the same shape as the streaming API.
+ * <p>
+ * The statuses try to look like a real stream. A few authors post most
+ * of the statuses (their popularity follows a Zipf distribution), some
+ * are retweets, languages are mixed, and the text is padded out with
+ * links and hashtags. Every status contains one of the keywords since
+ * the filter stream only sends matching statuses.
+ * <p>
+ * Use a {@link Builder} to set it up.
+ */
+public final class SyntheticSource implements FilterableSource {
+
+    private static final String[] WORDS = {
+            "the", "new", "just", "today", "love", "this", "what", "really", "can't", "believe",
+            "update", "check", "out", "best", "day", "ever", "why", "is", "everyone", "talking",
+            "about", "game", "phone", "music", "week", "people", "time", "good", "news", "video"
+    };
+    private static final char[] ALPHANUMERIC = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+    // Twitter's ids are increasing so we just count up from a realistic value
+    private static final long FIRST_ID = 1_017_461_024_565_956_608L;
+
+    private volatile String[] keyWords;
+    private final int rate;
+    private final double retweetRatio;
+    private final double urlRatio;
+    private final double hashtagRatio;
+    private final int minWords;
+    private final int maxWords;
+    private final String[] languages;
+    private final double[] languageCdf;
+    private final double[] authorCdf;
+    private final RawStreamListener listener;
+    private final Random random;
+    private final SimpleDateFormat dateFormat;
+    private final StringBuilder json = new StringBuilder(1024);
+    private final StringBuilder text = new StringBuilder(280);
+    private final AtomicLong messageCount = new AtomicLong();
+    private volatile boolean running;
+    private Thread thread;
+    private long nextId = FIRST_ID;
+
+    private SyntheticSource(Builder builder, RawStreamListener listener) {
+        this.keyWords = builder.keyWords;
+        this.rate = builder.rate;
+        this.retweetRatio = builder.retweetRatio;
+        this.urlRatio = builder.urlRatio;
+        this.hashtagRatio = builder.hashtagRatio;
+        this.minWords = builder.minWords;
+        this.maxWords = builder.maxWords;
+        this.languages = builder.languages;
+        this.languageCdf = cumulative(builder.languageWeights);
+        double[] authorWeights = new double[builder.numAuthors];
+        for (int i = 0; i < authorWeights.length; i++) {
+            authorWeights[i] = 1 / Math.pow(i + 1, builder.zipfExponent);
+        }
+        this.authorCdf = cumulative(authorWeights);
+        this.listener = listener;
+        this.random = new Random(builder.seed);
+        this.dateFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Override
+    public synchronized void start() {
+        if (thread != null) throw new IllegalStateException("Generator already started");
+        running = true;
+        thread = new Thread(this::generate, "SyntheticSource");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        running = false;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void refilter(String[] keyWords) {
+        if (keyWords.length == 0) throw new IllegalArgumentException("At least one keyword is needed");
+        this.keyWords = keyWords.clone();
+    }
+
+    /**
+     * Returns the number of statuses sent to the listener so far
+     */
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    private void generate() {
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        long nextNanos = System.nanoTime();
+        while (running) {
+            if (intervalNanos > 0) {
+                // Statuses are scheduled from the start time rather than the last
+                // status so the rate doesn't drift if the listener is slow for a bit
+                long waitNanos = nextNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(this, waitNanos);
+                    continue;
+                }
+                nextNanos += intervalNanos;
+            }
+            listener.onMessage(nextStatus(System.currentTimeMillis()));
+            messageCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Makes up the next status. This is what the source sends to its listener
+     * so it shouldn't be called while the source is running.
+     *
+     * @param now The time the status was sent in milliseconds
+     */
+    public String nextStatus(long now) {
+        json.setLength(0);
+        int author = pick(authorCdf);
+        String lang = languages[pick(languageCdf)];
+        boolean isRetweet = random.nextDouble() < retweetRatio;
+        // The original status of a retweet is older and from someone else
+        int originalAuthor = isRetweet ? pick(authorCdf) : author;
+        String message = nextText();
+
+        json.append('{');
+        appendHeader(nextId++, now, isRetweet ? retweetText(message, originalAuthor) : message, author);
+        if (isRetweet) {
+            json.append(",\"retweeted_status\":{");
+            appendHeader(nextId - 1 - random.nextInt(1_000_000), now - random.nextInt(3_600_000), message, originalAuthor);
+            json.append(",\"lang\":\"").append(lang).append("\"}");
+        }
+        json.append(",\"lang\":\"").append(lang).append('"');
+        json.append(",\"timestamp_ms\":\"").append(now).append("\"}");
+        return json.toString();
+    }
+
+    private void appendHeader(long id, long createdAt, String message, int author) {
+        json.append("\"created_at\":\"").append(dateFormat.format(new Date(createdAt))).append('"');
+        json.append(",\"id\":").append(id);
+        json.append(",\"id_str\":\"").append(id).append('"');
+        json.append(",\"text\":\"");
+        appendEscaped(message);
+        json.append("\",\"truncated\":false");
+        json.append(",\"user\":{\"id\":").append(1_000_000 + author);
+        json.append(",\"name\":\"User ").append(author).append('"');
+        json.append(",\"screen_name\":\"user_").append(author).append('"');
+        json.append(",\"description\":\"Synthetic user number ").append(author).append('"');
+        json.append(",\"profile_image_url\":\"http://pbs.twimg.com/profile_images/").append(author).append("/avatar_normal.jpg\"");
+        json.append(",\"profile_image_url_https\":\"https://pbs.twimg.com/profile_images/").append(author).append("/avatar_normal.jpg\"}");
+    }
+
+    private String nextText() {
+        text.setLength(0);
+        int numWords = minWords + random.nextInt(maxWords - minWords + 1);
+        int keyWordPosition = random.nextInt(numWords);
+        String[] keyWords = this.keyWords;
+        for (int i = 0; i < numWords; i++) {
+            if (i > 0) text.append(' ');
+            text.append(i == keyWordPosition
+                    ? keyWords[random.nextInt(keyWords.length)]
+                    : WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextDouble() < hashtagRatio) {
+            text.append(" #").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextDouble() < urlRatio) {
+            text.append(" https://t.co/");
+            for (int i = 0; i < 10; i++) text.append(ALPHANUMERIC[random.nextInt(ALPHANUMERIC.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String retweetText(String message, int originalAuthor) {
+        // Retweets are prefixed with the original author and cut off at 140 characters
+        String text = "RT @user_" + originalAuthor + ": " + message;
+        return text.length() > 140 ? text.substring(0, 139) + "\u2026" : text;
+    }
+
+    private void appendEscaped(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') json.append('\\');
+            json.append(c);
+        }
+    }
+
+    /**
+     * Picks an index with the probabilities given by the cumulative distribution
+     */
+    private int pick(double[] cdf) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        // binarySearch returns (-(insertion point) - 1) when there's no exact match
+        if (index < 0) index = -index - 1;
+        return Math.min(index, cdf.length - 1);
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double total = 0;
+        for (double weight : weights) total += weight;
+        double[] cdf = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cdf[i] = sum / total;
+        }
+        return cdf;
+    }
+
+    public static final class Builder {
+        private final String[] keyWords;
+        private int rate = 50;
+        private int numAuthors = 10_000;
+        private double zipfExponent = 1.1;
+        private double retweetRatio = 0.4;
+        private double urlRatio = 0.3;
+        private double hashtagRatio = 0.2;
+        private int minWords = 4;
+        private int maxWords = 30;
+        private String[] languages = {"en", "es", "pt", "ja", "und"};
+        private double[] languageWeights = {0.6, 0.15, 0.1, 0.1, 0.05};
+        private long seed = System.nanoTime();
+
+        /**
+         * @param keyWords Every status contains one of these
+         */
+        public Builder(String... keyWords) {
+            if (keyWords.length == 0) throw new IllegalArgumentException("At least one keyword is needed");
+            this.keyWords = keyWords;
+        }
+
+        /**
+         * @param statusesPerSecond 0 sends statuses as fast as the listener takes them
+         */
+        public Builder rate(int statusesPerSecond) {
+            this.rate = statusesPerSecond;
+            return this;
+        }
+
+        /**
+         * @param numAuthors   How many different users post statuses
+         * @param zipfExponent How skewed posting is towards the most active users,
+         *                     0 means every user posts as much as the others
+         */
+        public Builder authors(int numAuthors, double zipfExponent) {
+            this.numAuthors = numAuthors;
+            this.zipfExponent = zipfExponent;
+            return this;
+        }
+
+        public Builder retweetRatio(double ratio) {
+            this.retweetRatio = ratio;
+            return this;
+        }
+
+        /**
+         * @param urlRatio     The fraction of statuses that end with a link
+         * @param hashtagRatio The fraction of statuses with a hashtag
+         */
+        public Builder entities(double urlRatio, double hashtagRatio) {
+            this.urlRatio = urlRatio;
+            this.hashtagRatio = hashtagRatio;
+            return this;
+        }
+
+        /**
+         * The number of words in each status, not counting hashtags and links
+         */
+        public Builder words(int min, int max) {
+            if (min < 1 || max < min) throw new IllegalArgumentException("Bad word range " + min + "-" + max);
+            this.minWords = min;
+            this.maxWords = max;
+            return this;
+        }
+
+        /**
+         * @param languages A language code for each weight, i.e. "en"
+         * @param weights   How often each language is used relative to the others
+         */
+        public Builder languages(String[] languages, double[] weights) {
+            if (languages.length == 0 || languages.length != weights.length) {
+                throw new IllegalArgumentException("Every language needs a weight");
+            }
+            this.languages = languages;
+            this.languageWeights = weights;
+            return this;
+        }
+
+        /**
+         * Makes the same statuses every time, apart from their dates
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticSource build(RawStreamListener listener) {
+            return new SyntheticSource(this, listener);
+        }
+    }
+}
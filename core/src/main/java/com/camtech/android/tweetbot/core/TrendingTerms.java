@@ -0,0 +1,127 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the hashtags, mentions and pairs of words that come up the
+ * most in the tweets matching the keywords, which is usually what's behind a
+ * keyword spiking. Each thread adding tweets gets its own {@link HeavyHitters}
+ * and they're combined when the top terms are read, so the memory used only
+ * depends on the number of workers.
+ * <p>
+ * Every few minutes the counts are halved so the terms follow what's coming
+ * up now instead of what came up the most since the stream started.
+ */
+public final class TrendingTerms {
+
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final long HALF_LIFE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    // Pairs of words with one of these in them are rarely interesting
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "and", "for", "are", "but", "not", "you", "your", "all", "any", "can", "had", "has",
+            "have", "her", "him", "his", "how", "its", "our", "out", "she", "they", "them", "their",
+            "this", "that", "then", "than", "there", "these", "those", "was", "were", "what", "when",
+            "where", "which", "who", "why", "will", "with", "would", "from", "just", "like", "about",
+            "into", "over", "been", "being", "more", "some", "such", "only", "very", "also", "too"));
+
+    private final List<HeavyHitters> summaries = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<HeavyHitters> summary;
+    private final AtomicLong nextHalving = new AtomicLong();
+
+    public TrendingTerms() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The most terms each thread counts at once
+     */
+    public TrendingTerms(int capacity) {
+        summary = new ThreadLocal<HeavyHitters>() {
+            @Override
+            protected HeavyHitters initialValue() {
+                HeavyHitters heavyHitters = new HeavyHitters(capacity);
+                summaries.add(heavyHitters);
+                return heavyHitters;
+            }
+        };
+    }
+
+    /**
+     * Counts the hashtags, mentions and pairs of words in a tweet. Links and
+     * words shorter than 3 letters are skipped.
+     */
+    public void add(String text) {
+        HeavyHitters heavyHitters = summary.get();
+        String previousWord = null;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if ((c == '#' || c == '@') && i + 1 < length && isWordChar(text.charAt(i + 1))) {
+                int end = wordEnd(text, i + 1);
+                heavyHitters.add(text.substring(i, end).toLowerCase(Locale.ROOT));
+                previousWord = null;
+                i = end;
+            } else if (text.regionMatches(true, i, "http", 0, 4)) {
+                while (i < length && !Character.isWhitespace(text.charAt(i))) i++;
+                previousWord = null;
+            } else if (isWordChar(c)) {
+                int end = wordEnd(text, i);
+                String word = end - i < 3 ? null : text.substring(i, end).toLowerCase(Locale.ROOT);
+                if (word == null || STOP_WORDS.contains(word)) {
+                    previousWord = null;
+                } else {
+                    if (previousWord != null) heavyHitters.add(previousWord + ' ' + word);
+                    previousWord = word;
+                }
+                i = end;
+            } else {
+                // Pairs don't go across the end of a sentence or a line
+                if (!Character.isSpaceChar(c)) previousWord = null;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Halves the counts if {@link #HALF_LIFE_MILLIS} has passed since they were last halved
+     */
+    public void halveIfDue(long now) {
+        long next = nextHalving.get();
+        if (next == 0) {
+            nextHalving.compareAndSet(0, now + HALF_LIFE_MILLIS);
+            return;
+        }
+        if (now < next || !nextHalving.compareAndSet(next, now + HALF_LIFE_MILLIS)) return;
+        for (HeavyHitters heavyHitters : summaries) heavyHitters.halve();
+    }
+
+    /**
+     * Returns the terms that came up the most lately, most first
+     */
+    public List<HeavyHitters.Item> top(int limit) {
+        Map<String, long[]> counts = new HashMap<>();
+        for (HeavyHitters heavyHitters : summaries) heavyHitters.addCountsTo(counts);
+        return HeavyHitters.top(counts, limit);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static int wordEnd(String text, int start) {
+        int end = start;
+        while (end < text.length() && isWordChar(text.charAt(end))) end++;
+        return end;
+    }
+}
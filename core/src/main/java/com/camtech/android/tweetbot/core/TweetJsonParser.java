@@ -0,0 +1,412 @@
+package com.camtech.android.tweetbot.core;
+
+/**
+ * Reads a raw status from the streaming API without building a tree of
+ * JSON objects. It walks the message once, only keeps the fields in
+ * {@link StatusRecord} and skips over everything else (entities, places,
+ * the rest of the user object...) without allocating anything.
+ * <p>
+ * Anything that isn't a status, or that doesn't look the way we expect,
+ * makes {@link #parse(String, StatusRecord)} return false so the caller
+ * can hand the message to twitter4j instead.
+ * <p>
+ * A parser keeps state between calls so each thread needs its own.
+ */
+public final class TweetJsonParser {
+
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    // Thrown for anything we can't handle. It's shared so bailing
+    // out of a message doesn't cost a stack trace.
+    private static final MalformedJsonException MALFORMED = new MalformedJsonException();
+
+    private final StringBuilder builder = new StringBuilder();
+    private String json;
+    private int pos;
+    private int keyStart;
+    private int keyEnd;
+
+    /**
+     * @param json The raw message exactly as it came from the stream
+     * @param out  Where the fields are written to, it's cleared first
+     * @return true if the message was a status and every field we need was found
+     */
+    public boolean parse(String json, StatusRecord out) {
+        this.json = json;
+        pos = 0;
+        out.clear();
+        try {
+            skipWhitespace();
+            if (json.charAt(pos) != '{') return false;
+            pos++;
+            parseStatus(out);
+            return out.id != 0 && out.createdAt != 0 && out.userId != 0 && out.text != null && out.screenName != null;
+        } catch (MalformedJsonException | IndexOutOfBoundsException e) {
+            return false;
+        } finally {
+            this.json = null;
+        }
+    }
+
+    private void parseStatus(StatusRecord out) {
+        String text = null;
+        String fullText = null;
+        String retweetedText = null;
+        boolean first = true;
+        while (nextKey(first)) {
+            first = false;
+            if (keyIs("id")) {
+                out.id = readLong();
+            } else if (keyIs("created_at")) {
+                out.createdAt = readDate();
+            } else if (keyIs("text")) {
+                text = readText();
+            } else if (keyIs("extended_tweet") && !isNull()) {
+                fullText = parseExtendedTweet();
+            } else if (keyIs("lang")) {
+                out.lang = readNullableString();
+            } else if (keyIs("user")) {
+                parseUser(out);
+            } else if (keyIs("retweeted_status") && !isNull()) {
+                out.isRetweet = true;
+                retweetedText = parseRetweeted(out);
+            } else {
+                skipValue();
+            }
+        }
+        // Retweets are truncated so we use the text of the original status
+        out.text = retweetedText != null ? retweetedText : fullText != null ? fullText : text;
+    }
+
+    private void parseUser(StatusRecord out) {
+        expect('{');
+        boolean first = true;
+        while (nextKey(first)) {
+            first = false;
+            if (keyIs("id")) {
+                out.userId = readLong();
+            } else if (keyIs("screen_name")) {
+                out.screenName = readString();
+            } else if (keyIs("name")) {
+                out.name = readNullableString();
+            } else if (keyIs("description")) {
+                out.userDescription = readNullableString();
+            } else if (keyIs("profile_image_url")) {
+                out.userProfilePic = toBiggerImageUrl(readNullableString());
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    /**
+     * Reads the id of the original status into the record and returns its text
+     */
+    private String parseRetweeted(StatusRecord out) {
+        expect('{');
+        String text = null;
+        String fullText = null;
+        boolean first = true;
+        while (nextKey(first)) {
+            first = false;
+            if (keyIs("text")) {
+                text = readText();
+            } else if (keyIs("extended_tweet") && !isNull()) {
+                fullText = parseExtendedTweet();
+            } else if (keyIs("id")) {
+                out.retweetedId = readLong();
+            } else {
+                skipValue();
+            }
+        }
+        if (text == null || out.retweetedId == 0) throw MALFORMED;
+        return fullText != null ? fullText : text;
+    }
+
+    /**
+     * Returns the full text of a status longer than 140 characters. Its
+     * "text" is cut off, the same as twitter4j we use this instead.
+     */
+    private String parseExtendedTweet() {
+        expect('{');
+        String fullText = null;
+        boolean first = true;
+        while (nextKey(first)) {
+            first = false;
+            if (keyIs("full_text")) {
+                fullText = readText();
+            } else {
+                skipValue();
+            }
+        }
+        return fullText;
+    }
+
+    /**
+     * Moves to the next key of the current object and past its colon.
+     *
+     * @param first Whether this is the first key of the object
+     * @return false once the end of the object has been reached
+     */
+    private boolean nextKey(boolean first) {
+        skipWhitespace();
+        char c = json.charAt(pos);
+        if (c == '}') {
+            pos++;
+            return false;
+        }
+        if (!first) {
+            if (c != ',') throw MALFORMED;
+            pos++;
+            skipWhitespace();
+        }
+        if (json.charAt(pos) != '"') throw MALFORMED;
+        keyStart = ++pos;
+        skipStringBody();
+        keyEnd = pos - 1;
+        skipWhitespace();
+        expect(':');
+        return true;
+    }
+
+    private boolean keyIs(String name) {
+        return keyEnd - keyStart == name.length() && json.regionMatches(keyStart, name, 0, name.length());
+    }
+
+    private long readLong() {
+        skipWhitespace();
+        boolean negative = json.charAt(pos) == '-';
+        if (negative) pos++;
+        long value = 0;
+        int start = pos;
+        char c;
+        while ((c = json.charAt(pos)) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            pos++;
+        }
+        if (pos == start) throw MALFORMED;
+        return negative ? -value : value;
+    }
+
+    private boolean isNull() {
+        skipWhitespace();
+        if (!json.startsWith("null", pos)) return false;
+        pos += 4;
+        return true;
+    }
+
+    private String readNullableString() {
+        return isNull() ? null : readString();
+    }
+
+    private String readString() {
+        expect('"');
+        int start = pos;
+        // Most strings don't have any escapes so they can be copied straight out
+        while (true) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                return json.substring(start, pos++);
+            }
+            if (c == '\\') break;
+            pos++;
+        }
+        builder.setLength(0);
+        builder.append(json, start, pos);
+        while (true) {
+            char c = json.charAt(pos++);
+            if (c == '"') return builder.toString();
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            c = json.charAt(pos++);
+            switch (c) {
+                case 'n': builder.append('\n'); break;
+                case 't': builder.append('\t'); break;
+                case 'r': builder.append('\r'); break;
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'u':
+                    // Characters outside the BMP come through as two escapes so
+                    // appending each half on its own gives the right surrogate pair
+                    builder.append((char) readHex(pos));
+                    pos += 4;
+                    break;
+                default:
+                    // \" \\ and \/
+                    builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * Reads the text of a status. Twitter escapes &, < and > in it as HTML
+     * entities, twitter4j turns them back so we do the same.
+     */
+    private String readText() {
+        String text = readString();
+        int amp = text.indexOf('&');
+        if (amp < 0) return text;
+        builder.setLength(0);
+        builder.append(text, 0, amp);
+        for (int i = amp; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '&') {
+                if (text.startsWith("amp;", i + 1)) {
+                    builder.append('&');
+                    i += 4;
+                    continue;
+                }
+                if (text.startsWith("lt;", i + 1)) {
+                    builder.append('<');
+                    i += 3;
+                    continue;
+                }
+                if (text.startsWith("gt;", i + 1)) {
+                    builder.append('>');
+                    i += 3;
+                    continue;
+                }
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private int readHex(int start) {
+        int value = 0;
+        for (int i = start; i < start + 4; i++) {
+            int digit = Character.digit(json.charAt(i), 16);
+            if (digit < 0) throw MALFORMED;
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Reads a date in Twitter's format, i.e. "Wed Aug 27 13:08:45 +0000 2008",
+     * straight from the message
+     *
+     * @return The date in milliseconds since the epoch
+     */
+    private long readDate() {
+        expect('"');
+        int s = pos;
+        if (json.charAt(s + 30) != '"') throw MALFORMED;
+        int month = 0;
+        while (!json.regionMatches(s + 4, MONTHS, month * 3, 3)) {
+            if (++month == 12) throw MALFORMED;
+        }
+        int day = readDigits(s + 8, 2);
+        int hours = readDigits(s + 11, 2);
+        int minutes = readDigits(s + 14, 2);
+        int seconds = readDigits(s + 17, 2);
+        int offset = readDigits(s + 21, 2) * 60 + readDigits(s + 23, 2);
+        if (json.charAt(s + 20) == '-') offset = -offset;
+        int year = readDigits(s + 26, 4);
+        pos = s + 31;
+
+        long days = daysSinceEpoch(year, month + 1, day);
+        long epochSeconds = ((days * 24 + hours) * 60 + minutes - offset) * 60 + seconds;
+        return epochSeconds * 1000;
+    }
+
+    private int readDigits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = json.charAt(i);
+            if (c < '0' || c > '9') throw MALFORMED;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * The number of days between 1970-01-01 and the given date
+     * in the proleptic Gregorian calendar
+     */
+    static long daysSinceEpoch(int year, int month, int day) {
+        // Count years from March so the leap day is the last day of the year
+        if (month <= 2) year--;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Same as twitter4j's User#getBiggerProfileImageURL, i.e. "..._normal.jpg" becomes "..._bigger.jpg"
+     */
+    static String toBiggerImageUrl(String url) {
+        if (url == null) return null;
+        int index = url.lastIndexOf('_');
+        if (index < 0) return url;
+        int suffixIndex = url.lastIndexOf('.');
+        int slashIndex = url.lastIndexOf('/');
+        String bigger = url.substring(0, index) + "_bigger";
+        if (suffixIndex > slashIndex) bigger += url.substring(suffixIndex);
+        return bigger;
+    }
+
+    private void skipValue() {
+        skipWhitespace();
+        char c = json.charAt(pos);
+        if (c == '"') {
+            pos++;
+            skipStringBody();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = json.charAt(pos++);
+                if (c == '"') {
+                    skipStringBody();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        } else {
+            // Numbers, true, false and null
+            int start = pos;
+            while (pos < json.length() && isLiteralChar(json.charAt(pos))) pos++;
+            if (pos == start) throw MALFORMED;
+        }
+    }
+
+    private static boolean isLiteralChar(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.' || c == 'E';
+    }
+
+    /**
+     * Moves past the closing quote of a string whose opening quote was already read
+     */
+    private void skipStringBody() {
+        while (true) {
+            char c = json.charAt(pos++);
+            if (c == '"') return;
+            if (c == '\\') pos++;
+        }
+    }
+
+    private void expect(char expected) {
+        skipWhitespace();
+        if (json.charAt(pos) != expected) throw MALFORMED;
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        char c;
+        while ((c = json.charAt(pos)) == ' ' || c == '\n' || c == '\r' || c == '\t') pos++;
+    }
+
+    private static final class MalformedJsonException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.Arrays;
+
+/**
+ * Turns the text of a status into what's shown on its card. Links are taken
+ * out (they're usually cut off, or lead somewhere we'd rather not send anyone),
+ * HTML entities like {@code &amp;} are decoded and the position of every
+ * hashtag and mention is recorded so the card can highlight them.
+ * <p>
+ * This is done once, when the status is processed, so binding a card only
+ * has to read the result. It's a single pass over the text, and text with
+ * nothing to take out or decode is returned as it is without being copied.
+ * <p>
+ * A cleaner keeps state between calls so each thread needs its own.
+ */
+public final class TweetText {
+
+    public static final int[] NO_SPANS = new int[0];
+
+    private final StringBuilder builder = new StringBuilder();
+    // Start and end of each hashtag and mention in the cleaned text
+    private int[] spans = new int[16];
+    private int numSpans;
+    private String text;
+    // Everything before this has been copied into the builder
+    private int copiedFrom;
+
+    /**
+     * Returns the text without links and with its HTML entities decoded.
+     * The hashtags and mentions in it can be read from {@link #getSpans()} afterwards.
+     */
+    public String clean(String text) {
+        this.text = text;
+        builder.setLength(0);
+        numSpans = 0;
+        copiedFrom = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == 'h' && isLinkStart(i)) {
+                int end = i;
+                while (end < length && !Character.isWhitespace(text.charAt(end))) end++;
+                // Take the space after it too so the words around it don't end up two spaces apart
+                if (i == 0 || Character.isWhitespace(text.charAt(i - 1))) {
+                    while (end < length && Character.isWhitespace(text.charAt(end))) end++;
+                }
+                skip(i, end);
+                i = end;
+            } else if (c == '&') {
+                i = decodeEntity(i);
+            } else if ((c == '#' || c == '@') && i + 1 < length && isWordChar(text.charAt(i + 1))
+                    && (i == 0 || !isWordChar(text.charAt(i - 1)))) {
+                int end = i + 1;
+                while (end < length && isWordChar(text.charAt(end))) end++;
+                int start = outputPosition(i);
+                addSpan(start, start + end - i);
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        String result;
+        if (copiedFrom == 0) {
+            result = text;
+        } else {
+            builder.append(text, copiedFrom, length);
+            result = builder.toString();
+        }
+        this.text = null;
+        // A link at the end leaves the space before it behind
+        int end = result.length();
+        while (end > 0 && Character.isWhitespace(result.charAt(end - 1))) end--;
+        return end < result.length() ? result.substring(0, end) : result;
+    }
+
+    /**
+     * Returns the start and end of every hashtag and mention found by the last
+     * call to {@link #clean(String)}, one pair after the other. The end is exclusive.
+     */
+    public int[] getSpans() {
+        return numSpans == 0 ? NO_SPANS : Arrays.copyOf(spans, numSpans * 2);
+    }
+
+    private boolean isLinkStart(int i) {
+        return text.startsWith("http://", i) || text.startsWith("https://", i);
+    }
+
+    /**
+     * Decodes the entity starting at {@code i}, if it is one, and returns where to carry on from
+     */
+    private int decodeEntity(int i) {
+        int semicolon = text.indexOf(';', i);
+        // The longest one we decode is &#x10FFFF;
+        if (semicolon < 0 || semicolon - i > 9) return i + 1;
+        int decoded = -1;
+        if (text.charAt(i + 1) == '#') {
+            decoded = parseCodePoint(i + 2, semicolon);
+        } else if (text.startsWith("amp;", i + 1)) {
+            decoded = '&';
+        } else if (text.startsWith("lt;", i + 1)) {
+            decoded = '<';
+        } else if (text.startsWith("gt;", i + 1)) {
+            decoded = '>';
+        } else if (text.startsWith("quot;", i + 1)) {
+            decoded = '"';
+        } else if (text.startsWith("apos;", i + 1)) {
+            decoded = '\'';
+        }
+        if (decoded < 0) return i + 1;
+        skip(i, semicolon + 1);
+        builder.appendCodePoint(decoded);
+        return semicolon + 1;
+    }
+
+    private int parseCodePoint(int start, int end) {
+        int radix = 10;
+        if (start < end && (text.charAt(start) == 'x' || text.charAt(start) == 'X')) {
+            radix = 16;
+            start++;
+        }
+        if (start == end) return -1;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(text.charAt(i), radix);
+            if (digit < 0) return -1;
+            value = value * radix + digit;
+        }
+        return Character.isValidCodePoint(value) ? value : -1;
+    }
+
+    /**
+     * Copies everything up to {@code start} into the builder and skips to {@code end}
+     */
+    private void skip(int start, int end) {
+        builder.append(text, copiedFrom, start);
+        copiedFrom = end;
+    }
+
+    /**
+     * Where a position in the original text ends up in the cleaned text
+     */
+    private int outputPosition(int i) {
+        return builder.length() + i - copiedFrom;
+    }
+
+    private void addSpan(int start, int end) {
+        if (numSpans * 2 == spans.length) spans = Arrays.copyOf(spans, spans.length * 2);
+        spans[numSpans * 2] = start;
+        spans[numSpans * 2 + 1] = end;
+        numSpans++;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
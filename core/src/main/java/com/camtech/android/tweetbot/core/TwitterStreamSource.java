@@ -0,0 +1,45 @@
+package com.camtech.android.tweetbot.core;
+
+import twitter4j.FilterQuery;
+import twitter4j.TwitterStream;
+
+/**
+ * The live filter stream. Listeners have to be added to
+ * the TwitterStream before this source is started.
+ * <p>
+ * Refiltering reuses the same TwitterStream, twitter4j closes the
+ * current connection and opens one with the new query. It still
+ * counts as a connection as far as Twitter's rate limits go.
+ */
+public final class TwitterStreamSource implements FilterableSource {
+
+    private final TwitterStream twitterStream;
+    private FilterQuery query;
+
+    public TwitterStreamSource(TwitterStream twitterStream, FilterQuery query) {
+        this.twitterStream = twitterStream;
+        this.query = query;
+    }
+
+    @Override
+    public synchronized void start() {
+        twitterStream.filter(query);
+    }
+
+    @Override
+    public synchronized void refilter(String[] keyWords) {
+        query = new FilterQuery(keyWords);
+        twitterStream.filter(query);
+    }
+
+    /**
+     * twitter4j waits for the connection to close, which can take a while,
+     * so it's done on its own thread and this returns right away
+     */
+    @Override
+    public void shutdown() {
+        Thread thread = new Thread(twitterStream::shutdown, "TwitterStreamShutdown");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,92 @@
+package com.camtech.android.tweetbot.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A small set of threads that drain a {@link RingBuffer}. Threads park
+ * when there's nothing to do and are woken up by {@link #signal()}
+ * so an idle stream doesn't keep the CPU busy.
+ */
+public final class WorkerPool<T> {
+
+    public interface ItemHandler<T> {
+        void handle(T item);
+    }
+
+    // Upper bound on how long an idle worker sleeps before checking the queue again
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RingBuffer<T> queue;
+    private final ItemHandler<T> handler;
+    private final Thread[] threads;
+    private final AtomicInteger parked = new AtomicInteger();
+    private volatile boolean running;
+
+    public WorkerPool(String name, int numThreads, RingBuffer<T> queue, ItemHandler<T> handler) {
+        this.queue = queue;
+        this.handler = handler;
+        this.threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new Thread(this::work, name + "-" + i);
+            threads[i].setDaemon(true);
+        }
+    }
+
+    public void start() {
+        running = true;
+        for (Thread thread : threads) thread.start();
+    }
+
+    /**
+     * Wakes up any parked workers. Should be called after
+     * something has been added to the queue.
+     */
+    public void signal() {
+        if (parked.get() > 0) {
+            for (Thread thread : threads) LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Stops every worker and waits for the item each one is on. Items still
+     * in the queue are dropped. Once this returns, nothing is being handled.
+     */
+    public void shutdown() {
+        running = false;
+        for (Thread thread : threads) LockSupport.unpark(thread);
+        for (Thread thread : threads) {
+            // A handler can shut the pool down from one of its own threads
+            if (thread == Thread.currentThread()) continue;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void work() {
+        while (running) {
+            T item = queue.poll();
+            if (item != null) {
+                try {
+                    handler.handle(item);
+                } catch (RuntimeException e) {
+                    // One bad status shouldn't kill the worker
+                    e.printStackTrace();
+                }
+                continue;
+            }
+            parked.incrementAndGet();
+            // Check the queue again in case something was
+            // added right before we said we were parking
+            if (queue.isEmpty() && running) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            parked.decrementAndGet();
+        }
+    }
+}
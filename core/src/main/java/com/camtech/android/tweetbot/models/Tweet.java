@@ -0,0 +1,182 @@
+package com.camtech.android.tweetbot.models;
+
+import com.camtech.android.tweetbot.core.TweetText;
+
+/**
+ * A tweet received from the stream, holding only what the app displays.
+ * Tweets are immutable so they can be handed between threads as they are.
+ * To save or send a list of tweets, use {@link TweetCodec}.
+ */
+public class Tweet {
+
+    private long createdAt;
+    private String screenName;
+    private String name;
+    private String userDescription;
+    private String userProfilePic;
+    private String message;
+    private String keyWord;
+    private long id;
+    private boolean isRetweet;
+    private long retweetedId;
+    private String lang;
+    // Start and end of each hashtag and mention in the message
+    private int[] entitySpans;
+
+    /**
+     * Constructs a new tweet object.
+     *
+     * @param createdAt       When the tweet was posted, in milliseconds since the epoch.
+     *                        It's only formatted into a readable date when it's displayed.
+     * @param screenName      The screen name of the user who posted the tweet, i.e. "@john_smith34".
+     * @param name            The name of the user who posted the tweet, i.e. "John Smith".
+     * @param userDescription The bio of the user.
+     * @param userProfilePic  The small profile picture of the user.
+     * @param message         The tweet text.
+     * @param keyWord         The keyword that was used to filter the tweet.
+     * @param id              The id of the tweet
+     * @param isRetweet       If this tweet was retweeted by someone else
+     * @param lang            The language Twitter detected for the tweet, i.e. "en"
+     */
+    public Tweet(
+            long createdAt,
+            String screenName,
+            String name,
+            String userDescription,
+            String userProfilePic,
+            String message,
+            String keyWord,
+            long id,
+            boolean isRetweet,
+            String lang) {
+
+        this(createdAt, screenName, name, userDescription, userProfilePic, message, keyWord, id,
+                isRetweet, 0, lang);
+    }
+
+    /**
+     * Constructs a new tweet object that might be a retweet.
+     *
+     * @param retweetedId The id of the original tweet if this is a retweet, 0 otherwise
+     */
+    public Tweet(
+            long createdAt,
+            String screenName,
+            String name,
+            String userDescription,
+            String userProfilePic,
+            String message,
+            String keyWord,
+            long id,
+            boolean isRetweet,
+            long retweetedId,
+            String lang) {
+
+        this(createdAt, screenName, name, userDescription, userProfilePic, message, keyWord, id,
+                isRetweet, retweetedId, lang, TweetText.NO_SPANS);
+    }
+
+    /**
+     * Constructs a new tweet object whose message was already cleaned up for display.
+     *
+     * @param message     The tweet text as returned by {@link TweetText#clean(String)}
+     * @param entitySpans The start and end of each hashtag and mention in the message,
+     *                    from {@link TweetText#getSpans()}. It's kept as is so it
+     *                    mustn't be changed afterwards.
+     */
+    public Tweet(
+            long createdAt,
+            String screenName,
+            String name,
+            String userDescription,
+            String userProfilePic,
+            String message,
+            String keyWord,
+            long id,
+            boolean isRetweet,
+            long retweetedId,
+            String lang,
+            int[] entitySpans) {
+
+        this.createdAt = createdAt;
+        this.screenName = screenName;
+        this.name = name;
+        this.userDescription = userDescription;
+        this.userProfilePic = userProfilePic;
+        this.message = message;
+        this.keyWord = keyWord;
+        this.id = id;
+        this.isRetweet = isRetweet;
+        this.retweetedId = retweetedId;
+        this.lang = lang;
+        this.entitySpans = entitySpans;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getScreenName() {
+        return screenName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUserDescription() {
+        return userDescription;
+    }
+
+    public String getUserProfilePic() {
+        return userProfilePic;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getKeyWord() {
+        return this.keyWord;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public boolean isRetweet() {
+        return isRetweet;
+    }
+
+    /**
+     * Returns the id of the original tweet if this is a retweet, 0 otherwise
+     */
+    public long getRetweetedId() {
+        return retweetedId;
+    }
+
+    public String getLang() {
+        return lang;
+    }
+
+    /**
+     * Returns the number of hashtags and mentions in the message
+     */
+    public int getEntityCount() {
+        return entitySpans.length / 2;
+    }
+
+    /**
+     * Returns where a hashtag or mention starts in the message
+     */
+    public int getEntityStart(int index) {
+        return entitySpans[index * 2];
+    }
+
+    /**
+     * Returns where a hashtag or mention ends in the message, exclusive
+     */
+    public int getEntityEnd(int index) {
+        return entitySpans[index * 2 + 1];
+    }
+}
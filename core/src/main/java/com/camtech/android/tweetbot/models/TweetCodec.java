@@ -0,0 +1,240 @@
+package com.camtech.android.tweetbot.models;
+
+import com.camtech.android.tweetbot.core.TweetText;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary format for lists of {@link Tweet}s. This is used instead of
+ * Parcelable or Serializable whenever tweets have to be saved or sent somewhere.
+ * <p>
+ * The layout is:
+ * <pre>
+ *   version   byte
+ *   count     varint
+ *   tweets    count * (flags byte, id varint, [retweetedId varint], createdAt varint, 7 strings, entities)
+ *   entities  count varint, count * (gap varint, length varint)
+ * </pre>
+ * The retweeted id is only written for retweets, and only since version 2.
+ * The entities are the hashtags and mentions in the message, each one written
+ * as its distance from the end of the one before, since version 3. Messages
+ * from older versions weren't cleaned up, so they're cleaned when they're read.
+ * Version 1 and 2 data can still be read.
+ * Strings are written as a varint tag. 0 means null, 1 means the UTF-8 bytes
+ * follow (length first), and anything else points back to a string already
+ * written earlier in the list. Tweets from the same user (and retweets of the
+ * same tweet) repeat a lot of text, so each of those strings is only written once.
+ */
+public final class TweetCodec {
+
+    public static final int VERSION = 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int FLAG_RETWEET = 1;
+    private static final int TAG_NULL = 0;
+    private static final int TAG_LITERAL = 1;
+    private static final int TAG_FIRST_REFERENCE = 2;
+
+    private TweetCodec() {
+    }
+
+    public static byte[] encode(List<Tweet> tweets) {
+        Writer writer = new Writer(tweets.size() * 64);
+        writer.writeByte(VERSION);
+        writer.writeVarint(tweets.size());
+        for (Tweet tweet : tweets) {
+            writer.writeByte(tweet.isRetweet() ? FLAG_RETWEET : 0);
+            writer.writeVarint(tweet.getId());
+            if (tweet.isRetweet()) writer.writeVarint(tweet.getRetweetedId());
+            writer.writeVarint(tweet.getCreatedAt());
+            writer.writeString(tweet.getScreenName());
+            writer.writeString(tweet.getName());
+            writer.writeString(tweet.getUserDescription());
+            writer.writeString(tweet.getUserProfilePic());
+            writer.writeString(tweet.getMessage());
+            writer.writeString(tweet.getKeyWord());
+            writer.writeString(tweet.getLang());
+            writer.writeVarint(tweet.getEntityCount());
+            int end = 0;
+            for (int i = 0; i < tweet.getEntityCount(); i++) {
+                writer.writeVarint(tweet.getEntityStart(i) - end);
+                writer.writeVarint(tweet.getEntityEnd(i) - tweet.getEntityStart(i));
+                end = tweet.getEntityEnd(i);
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data was written by an unknown version or is corrupt
+     */
+    public static List<Tweet> decode(byte[] data) {
+        if (data == null || data.length == 0) return Collections.emptyList();
+        Reader reader = new Reader(data);
+        int version = reader.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unknown tweet codec version " + version);
+        }
+        int count = (int) reader.readVarint();
+        List<Tweet> tweets = new ArrayList<>(count);
+        TweetText cleaner = version < 3 ? new TweetText() : null;
+        for (int i = 0; i < count; i++) {
+            int flags = reader.readByte();
+            long id = reader.readVarint();
+            boolean isRetweet = (flags & FLAG_RETWEET) != 0;
+            long retweetedId = isRetweet && version >= 2 ? reader.readVarint() : 0;
+            long createdAt = reader.readVarint();
+            String screenName = reader.readString();
+            String name = reader.readString();
+            String userDescription = reader.readString();
+            String userProfilePic = reader.readString();
+            String message = reader.readString();
+            String keyWord = reader.readString();
+            String lang = reader.readString();
+            int[] entitySpans;
+            if (version >= 3) {
+                entitySpans = readEntitySpans(reader, message != null ? message.length() : 0);
+            } else if (message != null) {
+                message = cleaner.clean(message);
+                entitySpans = cleaner.getSpans();
+            } else {
+                entitySpans = TweetText.NO_SPANS;
+            }
+            tweets.add(new Tweet(
+                    createdAt,
+                    screenName,
+                    name,
+                    userDescription,
+                    userProfilePic,
+                    message,
+                    keyWord,
+                    id,
+                    isRetweet,
+                    retweetedId,
+                    lang,
+                    entitySpans));
+        }
+        return tweets;
+    }
+
+    private static int[] readEntitySpans(Reader reader, int messageLength) {
+        int count = (int) reader.readVarint();
+        if (count == 0) return TweetText.NO_SPANS;
+        if (count < 0 || count > messageLength) throw new IllegalArgumentException("Bad entity count");
+        int[] spans = new int[count * 2];
+        long end = 0;
+        for (int i = 0; i < count; i++) {
+            long start = end + reader.readVarint();
+            end = start + reader.readVarint();
+            if (end > messageLength) throw new IllegalArgumentException("Entity outside the message");
+            spans[i * 2] = (int) start;
+            spans[i * 2 + 1] = (int) end;
+        }
+        return spans;
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Writer(int initialCapacity) {
+            buffer = new byte[Math.max(initialCapacity, 16)];
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) b;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                writeVarint(TAG_NULL);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeVarint(TAG_FIRST_REFERENCE + index);
+                return;
+            }
+            strings.put(s, strings.size());
+            byte[] bytes = s.getBytes(UTF_8);
+            writeVarint(TAG_LITERAL);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[position];
+            System.arraycopy(buffer, 0, result, 0, position);
+            return result;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                byte[] bigger = new byte[Math.max(buffer.length * 2, position + extra)];
+                System.arraycopy(buffer, 0, bigger, 0, position);
+                buffer = bigger;
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+        private final List<String> strings = new ArrayList<>();
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readByte() {
+            if (position >= buffer.length) throw new IllegalArgumentException("Unexpected end of data");
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        String readString() {
+            long tag = readVarint();
+            if (tag == TAG_NULL) return null;
+            if (tag >= TAG_FIRST_REFERENCE) {
+                long index = tag - TAG_FIRST_REFERENCE;
+                if (index >= strings.size()) throw new IllegalArgumentException("Bad string reference");
+                return strings.get((int) index);
+            }
+            int length = (int) readVarint();
+            if (length < 0 || position + length > buffer.length) {
+                throw new IllegalArgumentException("Unexpected end of data");
+            }
+            String s = new String(buffer, position, length, UTF_8);
+            position += length;
+            strings.add(s);
+            return s;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.CounterStore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CounterStoreTest {
+
+    @Test
+    public void countsFromManyThreads() throws Exception {
+        CounterStore store = new CounterStore();
+        CounterStore.Counter counter = store.counter("android", 10);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 100_000; j++) counter.increment();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(400_010, store.get("android"));
+        // Asking again returns the same counter and ignores the initial count
+        assertSame(counter, store.counter("android", 0));
+        assertEquals(-1, store.get("music"));
+    }
+
+    @Test
+    public void checkpointsOnlySaveChangedCounts() {
+        CounterStore store = new CounterStore();
+        List<Map<String, Long>> saves = new ArrayList<>();
+        store.startCheckpoints(counts -> saves.add(new HashMap<>(counts)), 60_000);
+        store.counter("android", 5).add(3);
+        store.counter("music", 7);
+
+        store.checkpoint();
+        store.checkpoint();
+        assertEquals(1, saves.size());
+        assertEquals(Long.valueOf(8), saves.get(0).get("android"));
+        // It started from the saved count and hasn't changed since
+        assertFalse(saves.get(0).containsKey("music"));
+
+        store.counter("music", 0).increment();
+        store.remove("android");
+        store.stopCheckpoints();
+        assertEquals(3, saves.size());
+        assertEquals(Long.valueOf(8), saves.get(1).get("android"));
+        assertEquals(Long.valueOf(8), saves.get(2).get("music"));
+        // Stopping empties the store
+        assertTrue(store.snapshot().isEmpty());
+    }
+}
@@ -0,0 +1,48 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.HyperLogLog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void estimatesWithinAFewPercent() {
+        for (int distinct : new int[]{10, 1_000, 100_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            // Every author posts a few times
+            for (int round = 0; round < 3; round++) {
+                for (long id = 1; id <= distinct; id++) sketch.add(id);
+            }
+            assertEquals(distinct, sketch.estimate(), Math.max(1, distinct * 0.05));
+        }
+    }
+
+    @Test
+    public void mergesAcrossSessionsWithoutCountingTwice() {
+        HyperLogLog first = new HyperLogLog();
+        for (long id = 0; id < 20_000; id++) first.add(id);
+        byte[] saved = first.toBytes();
+        assertEquals(HyperLogLog.SIZE_IN_BYTES, saved.length);
+        assertArrayEquals(saved, HyperLogLog.fromBytes(saved).toBytes());
+
+        // The next session loads the saved sketch and half of its authors are back
+        HyperLogLog second = new HyperLogLog();
+        second.merge(HyperLogLog.fromBytes(saved));
+        for (long id = 10_000; id < 30_000; id++) second.add(id);
+        // Loading it again changes nothing
+        second.merge(HyperLogLog.fromBytes(saved));
+        assertEquals(30_000, second.estimate(), 30_000 * 0.05);
+    }
+
+    @Test
+    public void rejectsBytesThatArentASketch() {
+        try {
+            HyperLogLog.fromBytes(new byte[10]);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.KeywordMatcher;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class KeywordMatcherTest {
+
+    @Test
+    public void findsOverlappingKeywords() {
+        KeywordMatcher matcher = new KeywordMatcher("he", "she", "hers");
+        assertArrayEquals(new String[]{"he", "hers", "she"}, match(matcher, "She said it was hers, he agreed"));
+        // "he" is inside "she" but it isn't a word on its own there
+        assertArrayEquals(new String[]{"she"}, match(matcher, "she"));
+        assertArrayEquals(new String[0], match(matcher, "ushers"));
+    }
+
+    @Test
+    public void keywordThatEndsAnotherOnlyMatchesOnItsOwn() {
+        KeywordMatcher matcher = new KeywordMatcher("football", "ball");
+        assertArrayEquals(new String[]{"football"}, match(matcher, "football season"));
+        assertArrayEquals(new String[]{"ball", "football"}, match(matcher, "#football, bring a ball"));
+    }
+
+    @Test
+    public void ignoresCase() {
+        KeywordMatcher matcher = new KeywordMatcher("Android", "iOS");
+        assertArrayEquals(new String[]{"Android", "iOS"}, match(matcher, "ANDROID or ios?"));
+        assertArrayEquals(new String[0], match(matcher, "androids"));
+    }
+
+    @Test
+    public void reportsEachKeywordOnce() {
+        KeywordMatcher matcher = new KeywordMatcher("cat", "dog");
+        int[] hits = new int[matcher.size()];
+        assertEquals(1, matcher.match("cat cat CAT category", hits));
+        assertEquals(0, hits[0]);
+        assertEquals(2, matcher.match("dog, cat, dog and another cat", hits));
+        assertEquals(0, matcher.match(null, hits));
+    }
+
+    /**
+     * Returns the keywords found in the text, sorted
+     */
+    private static String[] match(KeywordMatcher matcher, String text) {
+        int[] hits = new int[matcher.size()];
+        int found = matcher.match(text, hits);
+        String[] keyWords = new String[found];
+        for (int i = 0; i < found; i++) keyWords[i] = matcher.getKeyWord(hits[i]);
+        Arrays.sort(keyWords);
+        return keyWords;
+    }
+}
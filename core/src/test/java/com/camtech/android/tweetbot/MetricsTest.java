@@ -0,0 +1,51 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.Metrics;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Test
+    public void returnsTheSameMetricForAName() {
+        Metrics metrics = new Metrics();
+        metrics.counter("a").increment();
+        metrics.counter("a").add(2);
+        assertEquals(3, metrics.counter("a").getCount());
+        assertSame(metrics.histogram("b"), metrics.histogram("b"));
+    }
+
+    @Test
+    public void percentilesFallInTheRightBucket() {
+        Metrics.Histogram histogram = new Metrics().histogram("latency");
+        for (int i = 0; i < 99; i++) histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+
+        // 100us is in the 64-128us bucket, 50ms in the 32.8-65.5ms one
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(128), histogram.getPercentileNanos(50));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(128), histogram.getPercentileNanos(99));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(65_536), histogram.getPercentileNanos(100));
+        assertEquals(100, histogram.getCount());
+    }
+
+    @Test
+    public void onlyRemovesItsOwnGauge() {
+        Metrics metrics = new Metrics();
+        Metrics.Gauge first = () -> 1;
+        Metrics.Gauge second = () -> 2;
+        metrics.gauge("g", first);
+        metrics.gauge("g", second);
+        metrics.removeGauge("g", first);
+        assertEquals(Long.valueOf(2), metrics.getValues().get("g"));
+
+        StringWriter out = new StringWriter();
+        metrics.dump(new PrintWriter(out));
+        assertTrue(out.toString().contains("g: 2"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.CounterStore;
+import com.camtech.android.tweetbot.core.OccurrenceSeries;
+import com.camtech.android.tweetbot.core.OccurrenceSeries.Bucket;
+import com.camtech.android.tweetbot.core.OccurrenceSeries.Tier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OccurrenceSeriesTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    // 2018-06-01 00:00 UTC
+    private static final long MIDNIGHT = 1_527_811_200_000L;
+
+    @Test
+    public void putsEachIncreaseInTheMinuteItHappenedIn() {
+        CounterStore store = new CounterStore();
+        CounterStore.Counter android = store.counter("android", 100);
+        List<Bucket> saved = new ArrayList<>();
+        OccurrenceSeries series = new OccurrenceSeries(store, saved::addAll);
+
+        // Start measuring from the first read
+        series.sample(MIDNIGHT + 30_000);
+        android.add(5);
+        series.sample(MIDNIGHT + MINUTE);
+        android.add(3);
+        // A keyword added part way through counts from where it started
+        store.counter("music", 40).add(2);
+        series.sample(MIDNIGHT + 2 * MINUTE);
+        series.flush();
+
+        assertEquals(5, find(saved, "android", Tier.MINUTE, MIDNIGHT).getCount());
+        assertEquals(3, find(saved, "android", Tier.MINUTE, MIDNIGHT + MINUTE).getCount());
+        assertEquals(2, find(saved, "music", Tier.MINUTE, MIDNIGHT + MINUTE).getCount());
+        // The minutes are added up into the hour and the day
+        assertEquals(8, find(saved, "android", Tier.HOUR, MIDNIGHT).getCount());
+        assertEquals(8, find(saved, "android", Tier.DAY, MIDNIGHT).getCount());
+        assertEquals(8.0 / 60, find(saved, "android", Tier.HOUR, MIDNIGHT).getPerMinute(), 1e-9);
+
+        // Nothing is handed over twice
+        saved.clear();
+        series.flush();
+        assertTrue(saved.isEmpty());
+    }
+
+    @Test
+    public void picksTheTierForTheWindow() {
+        long now = MIDNIGHT + TimeUnit.DAYS.toMillis(365);
+        assertEquals(Tier.MINUTE, Tier.forWindow(now - TimeUnit.HOURS.toMillis(3), now, now));
+        assertEquals(Tier.HOUR, Tier.forWindow(now - TimeUnit.DAYS.toMillis(7), now, now));
+        assertEquals(Tier.DAY, Tier.forWindow(now - TimeUnit.DAYS.toMillis(200), now, now));
+        // Minutes from 3 days ago have already been deleted
+        long start = now - TimeUnit.DAYS.toMillis(3);
+        assertEquals(Tier.HOUR, Tier.forWindow(start, start + TimeUnit.HOURS.toMillis(1), now));
+    }
+
+    private static Bucket find(List<Bucket> buckets, String keyWord, Tier tier, long start) {
+        for (Bucket bucket : buckets) {
+            if (bucket.getKeyWord().equals(keyWord) && bucket.getTier() == tier && bucket.getStart() == start) {
+                return bucket;
+            }
+        }
+        throw new AssertionError("No " + tier + " bucket for " + keyWord + " at " + start);
+    }
+}
@@ -0,0 +1,220 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.ReconnectSupervisor;
+import com.camtech.android.tweetbot.core.ReconnectSupervisor.Failure;
+import com.camtech.android.tweetbot.core.FilterableSource;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import twitter4j.TwitterException;
+
+import static org.junit.Assert.*;
+
+public class ReconnectSupervisorTest {
+
+    @Test
+    public void classifiesErrors() {
+        assertEquals(Failure.RATE_LIMITED, Failure.classify(new TwitterException("", null, 420)));
+        assertEquals(Failure.RATE_LIMITED, Failure.classify(new TwitterException("", null, 429)));
+        assertEquals(Failure.AUTH, Failure.classify(new TwitterException("", null, 401)));
+        assertEquals(Failure.REJECTED, Failure.classify(new TwitterException("", null, 406)));
+        assertEquals(Failure.SERVER, Failure.classify(new TwitterException("", null, 503)));
+        assertEquals(Failure.DNS, Failure.classify(new TwitterException(new UnknownHostException("stream.twitter.com"))));
+        assertEquals(Failure.TIMEOUT, Failure.classify(new TwitterException(new SocketTimeoutException())));
+        assertEquals(Failure.NETWORK, Failure.classify(new IOException("Connection reset")));
+        assertEquals(Failure.UNKNOWN, Failure.classify(new IllegalStateException()));
+        assertFalse(Failure.AUTH.isRetryable());
+        assertTrue(Failure.RATE_LIMITED.isRetryable());
+    }
+
+    @Test
+    public void reconnectsWithBackoffAfterNetworkErrors() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        List<Long> delays = new CopyOnWriteArrayList<>();
+        CountDownLatch reconnected = new CountDownLatch(3);
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(
+                () -> new FakeSource(created, reconnected),
+                new ReconnectSupervisor.Listener() {
+                    @Override
+                    public void onReconnecting(Failure failure, long delayMillis, int attempt) {
+                        delays.add(delayMillis);
+                    }
+
+                    @Override
+                    public void onGaveUp(Failure failure, Exception error) {
+                        fail("Shouldn't give up on " + failure);
+                    }
+
+                    @Override
+                    public void onRefilter(String[] keyWords) {
+                    }
+                },
+                100,
+                TimeUnit.MINUTES.toMillis(15),
+                0,
+                new Random(1));
+
+        supervisor.start();
+        for (int i = 0; i < 2; i++) {
+            supervisor.onError(new IOException("Connection reset"));
+            // A second report of the same failure is ignored
+            supervisor.onError(new IOException("Connection reset"));
+            // Wait for the new source to be started before failing again
+            while (created.get() < i + 2) Thread.sleep(10);
+        }
+        assertTrue(reconnected.await(5, TimeUnit.SECONDS));
+        supervisor.shutdown();
+
+        assertEquals(3, created.get());
+        assertEquals(2, delays.size());
+        // 125-250ms for the first failure and 250-500ms for the second
+        assertTrue(delays.get(0) >= 125 && delays.get(0) <= 250);
+        assertTrue(delays.get(1) >= 250 && delays.get(1) <= 500);
+    }
+
+    @Test
+    public void givesUpOnAuthErrors() {
+        AtomicInteger created = new AtomicInteger();
+        Failure[] gaveUp = new Failure[1];
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(
+                () -> new FakeSource(created, new CountDownLatch(1)),
+                new ReconnectSupervisor.Listener() {
+                    @Override
+                    public void onReconnecting(Failure failure, long delayMillis, int attempt) {
+                        fail("Shouldn't reconnect after " + failure);
+                    }
+
+                    @Override
+                    public void onGaveUp(Failure failure, Exception error) {
+                        gaveUp[0] = failure;
+                    }
+
+                    @Override
+                    public void onRefilter(String[] keyWords) {
+                    }
+                });
+
+        supervisor.start();
+        supervisor.onError(new TwitterException("", null, 401));
+        assertEquals(Failure.AUTH, gaveUp[0]);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void waitsForConnectionBudget() throws Exception {
+        List<Long> delays = new CopyOnWriteArrayList<>();
+        AtomicInteger created = new AtomicInteger();
+        // Only 2 connections a minute
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(
+                () -> new FakeSource(created, new CountDownLatch(1)),
+                new ReconnectSupervisor.Listener() {
+                    @Override
+                    public void onReconnecting(Failure failure, long delayMillis, int attempt) {
+                        delays.add(delayMillis);
+                    }
+
+                    @Override
+                    public void onGaveUp(Failure failure, Exception error) {
+                    }
+
+                    @Override
+                    public void onRefilter(String[] keyWords) {
+                    }
+                },
+                2,
+                TimeUnit.MINUTES.toMillis(1),
+                0,
+                new Random(1));
+
+        supervisor.start();
+        supervisor.onError(new IOException());
+        while (created.get() < 2) Thread.sleep(10);
+        supervisor.onError(new IOException());
+        supervisor.shutdown();
+
+        // The first retry is quick but the second has to wait for the first connection to age out
+        assertTrue(delays.get(0) < 1_000);
+        assertTrue(delays.get(1) > TimeUnit.SECONDS.toMillis(50));
+    }
+
+    @Test
+    public void combinesKeywordChangesIntoOneRefilter() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        List<String[]> applied = new CopyOnWriteArrayList<>();
+        CountDownLatch refiltered = new CountDownLatch(1);
+        FakeSource[] source = new FakeSource[1];
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(
+                () -> source[0] = new FakeSource(created, new CountDownLatch(1)),
+                new ReconnectSupervisor.Listener() {
+                    @Override
+                    public void onReconnecting(Failure failure, long delayMillis, int attempt) {
+                        fail("Refiltering shouldn't reconnect");
+                    }
+
+                    @Override
+                    public void onGaveUp(Failure failure, Exception error) {
+                    }
+
+                    @Override
+                    public void onRefilter(String[] keyWords) {
+                        applied.add(keyWords);
+                        refiltered.countDown();
+                    }
+                },
+                10,
+                TimeUnit.MINUTES.toMillis(15),
+                100,
+                new Random(1));
+
+        supervisor.start();
+        supervisor.refilter(new String[]{"a"});
+        supervisor.refilter(new String[]{"an"});
+        supervisor.refilter(new String[]{"android"});
+        assertTrue(refiltered.await(5, TimeUnit.SECONDS));
+        // Give a wrongly scheduled second refilter the chance to run
+        Thread.sleep(200);
+        supervisor.shutdown();
+
+        assertEquals(1, applied.size());
+        assertArrayEquals(new String[]{"android"}, applied.get(0));
+        // The same source was refiltered instead of being replaced
+        assertEquals(1, created.get());
+        assertArrayEquals(new String[]{"android"}, source[0].keyWords);
+    }
+
+    private static final class FakeSource implements FilterableSource {
+        private final AtomicInteger created;
+        private final CountDownLatch started;
+        volatile String[] keyWords;
+
+        FakeSource(AtomicInteger created, CountDownLatch started) {
+            this.created = created;
+            this.started = started;
+            created.incrementAndGet();
+        }
+
+        @Override
+        public void start() {
+            started.countDown();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public void refilter(String[] keyWords) {
+            this.keyWords = keyWords;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.ReplaySource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import twitter4j.RawStreamListener;
+
+import static org.junit.Assert.*;
+
+public class ReplaySourceTest {
+    private static final String[] MESSAGES = {
+            "{\"id\":1,\"text\":\"first\",\"timestamp_ms\":\"1531418671000\"}",
+            "{\"limit\":{\"track\":5,\"timestamp_ms\":\"1531418671100\"}}",
+            "{\"id\":2,\"text\":\"second\",\"timestamp_ms\":\"1531418671500\"}"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysPlainFile() throws Exception {
+        File file = write("stream.json", false);
+        assertEquals(MESSAGES.length, replay(file, ReplaySource.MAX_SPEED).size());
+    }
+
+    @Test
+    public void replaysGzippedFile() throws Exception {
+        File file = write("stream.json.gz", true);
+        List<String> received = replay(file, ReplaySource.MAX_SPEED);
+        assertArrayEquals(MESSAGES, received.toArray());
+    }
+
+    @Test
+    public void keepsRecordedSpacing() throws Exception {
+        File file = write("stream.json", false);
+        // 500ms of recorded time at 5x should take about 100ms
+        long start = System.nanoTime();
+        replay(file, 5);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Replay took " + elapsedMillis + "ms", elapsedMillis >= 90 && elapsedMillis < 1_000);
+    }
+
+    private List<String> replay(File file, double speed) throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        ReplaySource source = new ReplaySource(file, speed, new RawStreamListener() {
+            @Override
+            public void onMessage(String rawString) {
+                received.add(rawString);
+            }
+
+            @Override
+            public void onException(Exception ex) {
+                fail(ex.getMessage());
+            }
+        });
+        source.start();
+        assertTrue(source.await(5, TimeUnit.SECONDS));
+        assertEquals(received.size(), source.getMessageCount());
+        return received;
+    }
+
+    private File write(String name, boolean gzip) throws Exception {
+        File file = folder.newFile(name);
+        OutputStream out = new FileOutputStream(file);
+        if (gzip) out = new GZIPOutputStream(out);
+        try (Writer writer = new OutputStreamWriter(out, "UTF-8")) {
+            for (String message : MESSAGES) {
+                // Keep-alive newlines should be skipped
+                writer.write(message + "\r\n\r\n");
+            }
+        }
+        return file;
+    }
+}
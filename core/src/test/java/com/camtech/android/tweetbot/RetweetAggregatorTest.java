@@ -0,0 +1,42 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.RetweetAggregator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RetweetAggregatorTest {
+
+    @Test
+    public void countsRetweetsOfTheSameOriginal() {
+        RetweetAggregator aggregator = new RetweetAggregator();
+        assertTrue(aggregator.add(1, 0));
+        assertFalse(aggregator.add(1, 1_000));
+        assertFalse(aggregator.add(1, 2_000));
+        assertTrue(aggregator.add(2, 2_000));
+
+        RetweetAggregator.Group group = aggregator.get(1, 2_000);
+        assertEquals(1, group.getRetweetedId());
+        assertEquals(3, group.getCount());
+        // Three retweets within a couple of seconds
+        assertEquals(3, group.getPerMinute(), 0.1);
+        // and nothing for a minute after that
+        assertEquals(group.getPerMinute() / Math.E, aggregator.get(1, 62_000).getPerMinute(), 0.01);
+    }
+
+    @Test
+    public void dropsTheOriginalRetweetedLongestAgo() {
+        RetweetAggregator aggregator = new RetweetAggregator(2);
+        aggregator.add(1, 0);
+        aggregator.add(2, 0);
+        aggregator.add(1, 0);
+        aggregator.add(3, 0);
+
+        assertEquals(2, aggregator.size());
+        assertNull(aggregator.get(2, 0));
+        assertEquals(2, aggregator.get(1, 0).getCount());
+        // Starts over once it comes back
+        assertTrue(aggregator.add(2, 0));
+    }
+}
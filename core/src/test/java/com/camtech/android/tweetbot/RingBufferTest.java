@@ -0,0 +1,114 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.RingBuffer;
+import com.camtech.android.tweetbot.core.RingBuffer.OverflowPolicy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+    private static final int PRODUCERS = 4;
+    private static final int CONSUMERS = 4;
+    private static final int ITEMS_PER_PRODUCER = 100_000;
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(8, new RingBuffer<Integer>(5, OverflowPolicy.DROP_NEWEST).capacity());
+        assertEquals(8, new RingBuffer<Integer>(8, OverflowPolicy.DROP_NEWEST).capacity());
+    }
+
+    @Test
+    public void dropNewestKeepsWhatsQueued() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4, OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 4; i++) assertTrue(buffer.offer(i));
+        assertFalse(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+
+        assertEquals(2, buffer.getDroppedCount());
+        assertEquals(4, buffer.size());
+        for (int i = 0; i < 4; i++) assertEquals(Integer.valueOf(i), buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void dropOldestKeepsTheNewestItems() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4, OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 10; i++) assertTrue(buffer.offer(i));
+
+        assertEquals(6, buffer.getDroppedCount());
+        assertEquals(4, buffer.size());
+        for (int i = 6; i < 10; i++) assertEquals(Integer.valueOf(i), buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void nothingIsLostOrDuplicatedBetweenThreads() throws Exception {
+        // Small enough that the producers keep filling it up
+        RingBuffer<Integer> buffer = new RingBuffer<>(64, OverflowPolicy.DROP_NEWEST);
+        int total = PRODUCERS * ITEMS_PER_PRODUCER;
+        // Each producer only writes its own part, they're read after the threads are joined
+        boolean[] accepted = new boolean[total];
+        int[] consumed = new int[total];
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int first = p * ITEMS_PER_PRODUCER;
+            Thread producer = new Thread(() -> {
+                for (int i = first; i < first + ITEMS_PER_PRODUCER; i++) {
+                    accepted[i] = buffer.offer(i);
+                }
+            });
+            producers.add(producer);
+        }
+
+        AtomicBoolean producing = new AtomicBoolean(true);
+        List<List<Integer>> received = new ArrayList<>();
+        List<Thread> consumers = new ArrayList<>();
+        for (int c = 0; c < CONSUMERS; c++) {
+            List<Integer> items = new ArrayList<>();
+            received.add(items);
+            Thread consumer = new Thread(() -> {
+                while (true) {
+                    // Read the flag first so anything offered before it was cleared gets polled
+                    boolean done = !producing.get();
+                    Integer item = buffer.poll();
+                    if (item != null) {
+                        items.add(item);
+                    } else if (done) {
+                        return;
+                    }
+                }
+            });
+            consumers.add(consumer);
+        }
+
+        for (Thread consumer : consumers) consumer.start();
+        for (Thread producer : producers) producer.start();
+        for (Thread producer : producers) producer.join();
+        producing.set(false);
+        for (Thread consumer : consumers) consumer.join();
+
+        int acceptedCount = 0;
+        for (boolean a : accepted) if (a) acceptedCount++;
+        int consumedCount = 0;
+        for (List<Integer> items : received) {
+            for (int item : items) {
+                assertTrue("Item " + item + " was consumed but dropped", accepted[item]);
+                consumed[item]++;
+                consumedCount++;
+            }
+        }
+        for (int i = 0; i < total; i++) {
+            assertEquals("Item " + i, accepted[i] ? 1 : 0, consumed[i]);
+        }
+        assertEquals(acceptedCount, consumedCount);
+        assertEquals(total - acceptedCount, buffer.getDroppedCount());
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,65 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.CounterStore;
+import com.camtech.android.tweetbot.core.SpikeDetector;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SpikeDetectorTest {
+
+    private static final long TICK = SpikeDetector.TICK_MILLIS;
+
+    private final CounterStore store = new CounterStore();
+    private final CounterStore.Counter counter = store.counter("android", 0);
+    private final List<String> spikes = new ArrayList<>();
+    private final SpikeDetector detector = new SpikeDetector(
+            store, (keyWord, perMinute, usualPerMinute) -> spikes.add(keyWord), TimeUnit.MINUTES.toMillis(10));
+    private long now = 1_000_000;
+
+    @Test
+    public void reportsASpikeOverTheUsualRateOnce() {
+        detector.setRatio(5);
+        // An hour and a half at 12 a minute, long enough for the long rate to settle
+        run(TimeUnit.MINUTES.toMillis(90), 1);
+        assertEquals(12, detector.getLongRate("android"), 1);
+        assertTrue(spikes.isEmpty());
+
+        // Then 10 times that for five minutes
+        run(TimeUnit.MINUTES.toMillis(5), 10);
+        assertEquals(1, spikes.size());
+        assertTrue(detector.getShortRate("android") > 100);
+
+        // It has to calm down before it can be reported again
+        run(TimeUnit.MINUTES.toMillis(30), 1);
+        run(TimeUnit.MINUTES.toMillis(5), 30);
+        assertEquals(2, spikes.size());
+    }
+
+    @Test
+    public void reportsGoingOverTheThreshold() {
+        detector.setThreshold(100);
+        run(TimeUnit.MINUTES.toMillis(2), 5);
+        assertTrue(spikes.isEmpty());
+        run(TimeUnit.MINUTES.toMillis(2), 20);
+        assertEquals(1, spikes.size());
+        // Staying over it isn't another spike
+        run(TimeUnit.MINUTES.toMillis(20), 20);
+        assertEquals(1, spikes.size());
+    }
+
+    /**
+     * Ticks for the given time, counting {@code perTick} occurrences between ticks
+     */
+    private void run(long millis, int perTick) {
+        for (long end = now + millis; now < end; now += TICK) {
+            counter.add(perTick);
+            detector.tick(now);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.AuthorSketches;
+import com.camtech.android.tweetbot.core.CounterStore;
+import com.camtech.android.tweetbot.core.HeavyHitters;
+import com.camtech.android.tweetbot.core.RetweetAggregator;
+import com.camtech.android.tweetbot.core.RingBuffer;
+import com.camtech.android.tweetbot.core.StreamProcessor;
+import com.camtech.android.tweetbot.core.SyntheticSource;
+import com.camtech.android.tweetbot.models.Tweet;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class StreamProcessorTest {
+
+    private final List<List<Tweet>> batches = new CopyOnWriteArrayList<>();
+    private final List<RetweetAggregator.Group> retweetGroups = new CopyOnWriteArrayList<>();
+
+    private final StreamProcessor.Callback callback = new StreamProcessor.Callback() {
+        @Override
+        public void onBatch(List<Tweet> tweets, List<RetweetAggregator.Group> retweets, String[] keyWords, long[] counts) {
+            batches.add(tweets);
+            retweetGroups.addAll(retweets);
+        }
+
+        @Override
+        public void onFallingBehind(String code, String message, int percentFull) {
+        }
+
+        @Override
+        public void onTrending(List<HeavyHitters.Item> terms) {
+        }
+    };
+
+    @Test
+    public void addsUpTrackLimitsAcrossConnections() {
+        StreamProcessor processor = new StreamProcessor(new String[]{"android"}, new long[1], callback);
+        processor.reportTrackLimitation(10);
+        processor.reportTrackLimitation(25);
+        // Reconnected, the count starts over
+        processor.reportTrackLimitation(5);
+        processor.shutdown();
+
+        assertEquals(30, processor.getUndeliveredCount());
+    }
+
+    @Test
+    public void onlyCountsInLightMode() {
+        String[] keyWords = {"android"};
+        SyntheticSource statuses = new SyntheticSource.Builder(keyWords).seed(1).build(null);
+        StreamProcessor processor = new StreamProcessor(keyWords, new long[1], callback);
+        assertFalse(processor.isLightMode());
+
+        processor.reportStallWarning("FALLING_BEHIND", "Falling behind", 60);
+        assertTrue(processor.isLightMode());
+        assertEquals(60, processor.getStallPercentFull());
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            processor.process(statuses.nextStatus(now));
+        }
+        processor.shutdown();
+
+        // Every status was counted but none of the tweets were sent out
+        assertEquals(100, processor.getCounts()[0]);
+        assertEquals(1, batches.size());
+        assertTrue(batches.get(0).isEmpty());
+    }
+
+    @Test
+    public void onlySendsTheFirstRetweetOfAnOriginal() throws Exception {
+        String[] keyWords = {"android"};
+        StreamProcessor processor = new StreamProcessor(keyWords, new long[1], callback);
+        String retweet = readResource("retweet.json");
+        for (int i = 0; i < 5; i++) {
+            processor.process(retweet);
+        }
+        // Wait for the batcher
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (processor.getCounts()[0] < 5 || batches.isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        processor.shutdown();
+
+        int shown = 0;
+        for (List<Tweet> batch : batches) shown += batch.size();
+        assertEquals(1, shown);
+        RetweetAggregator.Group last = retweetGroups.get(retweetGroups.size() - 1);
+        assertEquals(5, last.getCount());
+        assertEquals(5, processor.getCounts()[0]);
+    }
+
+    @Test
+    public void changingKeywordsDoesNotLoseCounts() throws Exception {
+        CounterStore store = new CounterStore();
+        Map<String, Long> saved = new ConcurrentHashMap<>();
+        store.startCheckpoints(saved::putAll, 60_000);
+        AuthorSketches authors = new AuthorSketches();
+        StreamProcessor processor = new StreamProcessor(new String[]{"android"}, new long[1], store, authors,
+                StreamProcessor.DEFAULT_QUEUE_CAPACITY, RingBuffer.OverflowPolicy.DROP_NEWEST, 1, callback);
+        // Only counting keeps the batches from piling up
+        processor.reportStallWarning("FALLING_BEHIND", "Falling behind", 60);
+
+        // With a single keyword every status counts towards it, so each status
+        // is counted once for whichever keyword was being tracked at the time
+        int statusesPerThread = 20_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            SyntheticSource statuses = new SyntheticSource.Builder("android").seed(t).build(null);
+            Thread thread = new Thread(() -> {
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < statusesPerThread; i++) processor.process(statuses.nextStatus(now));
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        // Switch back and forth while they're counting
+        String[][] keyWords = {{"music"}, {"android"}};
+        int switches = 0;
+        while (threads.get(0).isAlive() || threads.get(1).isAlive()) {
+            processor.setKeyWords(keyWords[switches++ % 2], new long[1]);
+            Thread.yield();
+        }
+        for (Thread thread : threads) thread.join();
+        String current = processor.getKeyWords()[0];
+        String removed = current.equals("android") ? "music" : "android";
+        processor.shutdown();
+
+        assertTrue(switches > 1);
+        // The removed keyword was saved when it was taken out
+        assertEquals(-1, store.get(removed));
+        assertNull(authors.get(removed));
+        assertEquals(2 * statusesPerThread, store.get(current) + saved.get(removed));
+    }
+
+    private static String readResource(String name) throws Exception {
+        try (InputStream in = StreamProcessorTest.class.getClassLoader().getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            return out.toString("UTF-8").trim();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.HeavyHitters;
+import com.camtech.android.tweetbot.core.TrendingTerms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TrendingTermsTest {
+
+    @Test
+    public void findsHashtagsMentionsAndPairsOfWords() {
+        TrendingTerms trendingTerms = new TrendingTerms();
+        trendingTerms.add("New #Android phone from @Google, see https://t.co/abc #android");
+        trendingTerms.add("Release date announced. New android phone #ANDROID");
+
+        List<String> terms = terms(trendingTerms.top(10));
+        assertEquals("#android", terms.get(0));
+        assertTrue(terms.contains("@google"));
+        assertTrue(terms.contains("new android"));
+        assertTrue(terms.contains("android phone"));
+        assertTrue(terms.contains("release date"));
+        // Not across a sentence, a link or a stop word
+        assertFalse(terms.contains("announced new"));
+        assertFalse(terms.contains("phone from"));
+        for (String term : terms) assertFalse(term, term.contains("http") || term.contains("t.co"));
+    }
+
+    @Test
+    public void keepsTheFrequentTermsWithBoundedMemory() {
+        // Anything over 11,500 / 40 occurrences is sure to be kept
+        HeavyHitters heavyHitters = new HeavyHitters(40);
+        for (int i = 0; i < 10_000; i++) {
+            heavyHitters.add("term" + i);
+            if (i % 10 == 0) heavyHitters.add("#frequent");
+            if (i % 20 == 0) heavyHitters.add("#common");
+        }
+        List<HeavyHitters.Item> top = heavyHitters.top(2);
+        assertEquals("#frequent", top.get(0).getTerm());
+        assertEquals("#common", top.get(1).getTerm());
+        // The count is never under the real one and never over by more than the error
+        assertTrue(top.get(0).getCount() >= 1000);
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= 1000);
+    }
+
+    @Test
+    public void halvingLetsNewTermsTakeOver() {
+        HeavyHitters heavyHitters = new HeavyHitters(10);
+        for (int i = 0; i < 100; i++) heavyHitters.add("#old");
+        for (int i = 0; i < 6; i++) heavyHitters.halve();
+        for (int i = 0; i < 10; i++) heavyHitters.add("#new");
+        assertEquals("#new", heavyHitters.top(1).get(0).getTerm());
+    }
+
+    private static List<String> terms(List<HeavyHitters.Item> items) {
+        List<String> terms = new ArrayList<>();
+        for (HeavyHitters.Item item : items) terms.add(item.getTerm());
+        return terms;
+    }
+}
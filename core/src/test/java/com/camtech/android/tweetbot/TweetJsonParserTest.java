@@ -0,0 +1,67 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.StatusRecord;
+import com.camtech.android.tweetbot.core.TweetJsonParser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import twitter4j.Status;
+import twitter4j.TwitterObjectFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link TweetJsonParser} against twitter4j
+ */
+public class TweetJsonParserTest {
+
+    @Test
+    public void parserMatchesTwitter4j() throws Exception {
+        for (String json : new String[]{readResource("status.json"), readResource("retweet.json"), readResource("entities.json")}) {
+            Status status = TwitterObjectFactory.createStatus(json);
+            StatusRecord record = new StatusRecord();
+            assertTrue(new TweetJsonParser().parse(json, record));
+
+            assertEquals(status.getId(), record.id);
+            assertEquals(status.getCreatedAt().getTime(), record.createdAt);
+            assertEquals(status.getUser().getId(), record.userId);
+            assertEquals(status.getUser().getScreenName(), record.screenName);
+            assertEquals(status.getUser().getName(), record.name);
+            assertEquals(status.getUser().getDescription(), record.userDescription);
+            assertEquals(status.getUser().getBiggerProfileImageURL(), record.userProfilePic);
+            assertEquals(status.isRetweet(), record.isRetweet);
+            assertEquals(status.isRetweet() ? status.getRetweetedStatus().getText() : status.getText(), record.text);
+            assertEquals(status.getLang(), record.lang);
+        }
+    }
+
+    @Test
+    public void parserUnescapesText() throws Exception {
+        StatusRecord record = new StatusRecord();
+        assertTrue(new TweetJsonParser().parse(readResource("entities.json"), record));
+        assertEquals("Q&A at 7 tonight: why Android builds take > 5 min & how to get them < 1 min. Bring questions <3 #android", record.text);
+    }
+
+    @Test
+    public void parserRejectsOtherMessages() {
+        TweetJsonParser parser = new TweetJsonParser();
+        StatusRecord record = new StatusRecord();
+        assertFalse(parser.parse("{\"limit\":{\"track\":1234,\"timestamp_ms\":\"1531418673694\"}}", record));
+        assertFalse(parser.parse("{\"delete\":{\"status\":{\"id\":1,\"id_str\":\"1\",\"user_id\":3,\"user_id_str\":\"3\"}}}", record));
+        assertFalse(parser.parse("{\"created_at\":\"Thu Jul 12 18:04:31 +0000 2018\",\"id\":1,\"text\":", record));
+        assertFalse(parser.parse("", record));
+    }
+
+    private static String readResource(String name) throws Exception {
+        try (InputStream in = TweetJsonParserTest.class.getClassLoader().getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            return out.toString("UTF-8").trim();
+        }
+    }
+}
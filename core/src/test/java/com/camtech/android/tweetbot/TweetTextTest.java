@@ -0,0 +1,60 @@
+package com.camtech.android.tweetbot;
+
+import com.camtech.android.tweetbot.core.TweetText;
+import com.camtech.android.tweetbot.models.Tweet;
+import com.camtech.android.tweetbot.models.TweetCodec;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TweetTextTest {
+
+    private final TweetText cleaner = new TweetText();
+
+    @Test
+    public void removesLinksAndDecodesEntities() {
+        assertEquals("Q&A with @dev <3 #android",
+                cleaner.clean("Q&amp;A with @dev &lt;3 #android https://t.co/abc"));
+        assertEquals("Say \"hi\" é 😀 &unknown; & more",
+                cleaner.clean("Say &quot;hi&quot; &#233; &#x1F600; &unknown; & more"));
+        assertEquals("starts here", cleaner.clean("http://t.co/x starts here"));
+        assertEquals("in the middle", cleaner.clean("in the https://t.co/x middle"));
+    }
+
+    @Test
+    public void leavesCleanTextAlone() {
+        String text = "Nothing to do in this one #really";
+        assertSame(text, cleaner.clean(text));
+    }
+
+    @Test
+    public void marksHashtagsAndMentionsInTheCleanedText() {
+        String cleaned = cleaner.clean("&amp; #one, @two_2 http://t.co/a #three email@example.com #");
+        int[] spans = cleaner.getSpans();
+        assertEquals(6, spans.length);
+        assertEquals("#one", cleaned.substring(spans[0], spans[1]));
+        assertEquals("@two_2", cleaned.substring(spans[2], spans[3]));
+        assertEquals("#three", cleaned.substring(spans[4], spans[5]));
+
+        cleaner.clean("no entities");
+        assertSame(TweetText.NO_SPANS, cleaner.getSpans());
+    }
+
+    @Test
+    public void codecKeepsTheEntities() {
+        String message = cleaner.clean("Hello @world &amp; #android");
+        Tweet tweet = new Tweet(1, "user", "User", null, null, message, "android", 2,
+                false, 0, "en", cleaner.getSpans());
+        List<Tweet> decoded = TweetCodec.decode(TweetCodec.encode(Collections.singletonList(tweet)));
+
+        Tweet copy = decoded.get(0);
+        assertEquals(message, copy.getMessage());
+        assertEquals(2, copy.getEntityCount());
+        assertEquals("@world", message.substring(copy.getEntityStart(0), copy.getEntityEnd(0)));
+        assertEquals("#android", message.substring(copy.getEntityStart(1), copy.getEntityEnd(1)));
+    }
+}